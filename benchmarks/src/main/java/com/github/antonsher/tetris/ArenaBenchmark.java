@@ -0,0 +1,113 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game steps per microsecond of a {@link GameArena} and of as many {@link TetrisEngine}s given the same random inputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArenaBenchmark {
+    static final int GAMES = 100_000;
+    // steps cycle through this many sets of random actions
+    static final int ACTION_SETS = 16;
+
+    // mostly moves and rotations, with an occasional drop so that pieces lock
+    static byte[][] randomActions() {
+        SplittableRandom random = new SplittableRandom(7);
+        byte[][] actions = new byte[ACTION_SETS][GAMES];
+        for (byte[] set : actions) {
+            for (int g = 0; g < GAMES; g++) {
+                set[g] = (byte) (random.nextInt(8) == 0 ? Input.DROP.ordinal() : random.nextInt(Input.DROP.ordinal()));
+            }
+        }
+        return actions;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Arena {
+        @Param({"1", "0"})
+        public int threads;
+
+        GameArena arena;
+        byte[][] actions;
+        int[] rewards = new int[GAMES];
+        byte[] done = new byte[GAMES];
+        int step;
+
+        @Setup
+        public void setUp() {
+            arena = new GameArena(GAMES, 10, 20, 42, threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            actions = randomActions();
+        }
+
+        @TearDown
+        public void tearDown() {
+            arena.close();
+        }
+    }
+
+    // the same games as the arena's, stepped one after another on one thread
+    @State(Scope.Benchmark)
+    public static class Engines {
+        TetrisEngine[] engines;
+        byte[][] actions;
+        int[] rewards = new int[GAMES];
+        int step;
+
+        @Setup
+        public void setUp() {
+            GameArena seeds = new GameArena(GAMES, 10, 20, 42, 1);
+            engines = new TetrisEngine[GAMES];
+            for (int g = 0; g < GAMES; g++) {
+                engines[g] = new TetrisEngine(new TetrisModel(10, 20));
+                engines[g].start(seeds.getSeed(g));
+            }
+            seeds.close();
+            actions = randomActions();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int[] arena(Arena games) {
+        games.arena.step(games.actions[games.step++ & (ACTION_SETS - 1)], games.rewards, games.done);
+        return games.rewards;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int[] engines(Engines games) {
+        byte[] actions = games.actions[games.step++ & (ACTION_SETS - 1)];
+        for (int g = 0; g < GAMES; g++) {
+            TetrisEngine engine = games.engines[g];
+            int score = engine.model.score;
+            engine.step(GameArena.INPUTS[actions[g]]);
+            games.rewards[g] = engine.model.score - score;
+            if (engine.isOver()) {
+                engine.start(engine.model.random.nextLong());
+            }
+        }
+        return games.rewards;
+    }
+}
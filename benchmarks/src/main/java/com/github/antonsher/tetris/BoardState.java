@@ -0,0 +1,78 @@
+package com.github.antonsher.tetris;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * A model whose bottom rows are filled to the given percentage with garbage that has one gap per row,
+ * so nothing is cleared by the fill itself, and whose tetra is the first orientation of the given kind.
+ */
+@State(Scope.Thread)
+public class BoardState {
+    @Param({"0", "25", "50", "75"})
+    public int fill;
+
+    @Param({"1", "2", "3", "4", "5", "6", "7"})
+    public int kind;
+
+    public TetrisModel model;
+    public int[][] spawn;
+    public long[] filledRows;
+    public int[][] filledColors;
+    public int filledStackHeight;
+    public int[] filledColumnHeights;
+
+    @Setup
+    public void setUp() {
+        model = new TetrisModel(fill * 31L + kind);
+        Random random = new Random(fill);
+        int filledHeight = model.getBoardHeight() * fill / 100;
+        for (int y = 0; y < filledHeight; y++) {
+            int gap = random.nextInt(model.getBoardWidth());
+            for (int x = 0; x < model.getBoardWidth(); x++) {
+                if (x != gap) {
+                    model.setBoardTile(x, y, 1 + random.nextInt(7));
+                }
+            }
+        }
+        filledRows = model.rows.clone();
+        filledStackHeight = model.stackHeight;
+        filledColumnHeights = model.columnHeights.clone();
+        filledColors = new int[model.colors.length][];
+        for (int y = 0; y < filledColors.length; y++) {
+            filledColors[y] = model.colors[y].clone();
+        }
+
+        for (int[][] tetra : model.TETRAS) {
+            if (model.getTetraKind(tetra) == kind) {
+                spawn = tetra;
+                break;
+            }
+        }
+        resetTetra();
+        for (int i = 0; i < 5; i++) {
+            model.next[i][0] = spawn[i][0];
+            model.next[i][1] = spawn[i][1];
+        }
+    }
+
+    public void resetTetra() {
+        for (int i = 0; i < 5; i++) {
+            model.tetra[i][0] = spawn[i][0];
+            model.tetra[i][1] = spawn[i][1];
+        }
+    }
+
+    public void resetBoard() {
+        System.arraycopy(filledRows, 0, model.rows, 0, filledRows.length);
+        for (int y = 0; y < filledColors.length; y++) {
+            System.arraycopy(filledColors[y], 0, model.colors[y], 0, filledColors[y].length);
+        }
+        model.stackHeight = filledStackHeight;
+        System.arraycopy(filledColumnHeights, 0, model.columnHeights, 0, filledColumnHeights.length);
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.antonsher.tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boards per microsecond of the scalar and the Vector API {@link BoardEvaluator}, and of evaluating the same boards
+ * one by one with {@link AutoPlayer#evaluate}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EvaluatorBenchmark {
+    static final int BOARDS = 1024;
+
+    @State(Scope.Thread)
+    public static class BatchState {
+        @Param({"25", "50", "75"})
+        public int fill;
+
+        BoardBatch batch;
+        long[][] boards;
+        int[] tops;
+        AutoPlayer player;
+        BoardEvaluator scalar = new ScalarBoardEvaluator();
+        BoardEvaluator vector = BoardEvaluator.create();
+
+        // garbage stacks around the fill height with one gap per row and random holes
+        @Setup
+        public void setUp() {
+            if (!(vector instanceof VectorBoardEvaluator)) {
+                throw new IllegalStateException("The Vector API is not available");
+            }
+            TetrisModel model = new TetrisModel();
+            int width = model.getBoardWidth();
+            int height = model.getBoardHeight();
+            player = new AutoPlayer(model);
+            batch = new BoardBatch(width, height, BOARDS);
+            boards = new long[BOARDS][height];
+            tops = new int[BOARDS];
+            SplittableRandom random = new SplittableRandom(fill);
+            long fullRow = (1L << width) - 1;
+            for (int b = 0; b < BOARDS; b++) {
+                int top = Math.max(1, Math.min(height, height * fill / 100 + random.nextInt(-2, 3)));
+                for (int y = 0; y < top; y++) {
+                    boards[b][y] = fullRow & ~(1L << random.nextInt(width)) & ~(random.nextInt(4) == 0 ? 1L << random.nextInt(width) : 0);
+                }
+                boards[b][top - 1] |= 1;
+                tops[b] = top;
+                batch.add(boards[b], top, random.nextInt(3));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public double[] scalar(BatchState state) {
+        state.scalar.evaluate(state.batch);
+        return state.batch.scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public double[] vector(BatchState state) {
+        state.vector.evaluate(state.batch);
+        return state.batch.scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public double autoPlayer(BatchState state) {
+        double sum = 0;
+        for (int b = 0; b < BOARDS; b++) {
+            sum += state.player.evaluate(state.boards[b], state.tops[b], state.batch.lines[b]);
+        }
+        return sum;
+    }
+}
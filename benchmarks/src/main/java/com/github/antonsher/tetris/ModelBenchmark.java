@@ -0,0 +1,66 @@
+package com.github.antonsher.tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    @Benchmark
+    public boolean canPlace(BoardState state) {
+        return state.model.canPlace(state.model.next);
+    }
+
+    @Benchmark
+    public boolean canMoveDown(BoardState state) {
+        return state.model.canMoveDown();
+    }
+
+    @Benchmark
+    public int[][] rotate(BoardState state) {
+        return state.model.rotate(state.model.tetra);
+    }
+
+    @Benchmark
+    public int[][] drop(BoardState state) {
+        state.resetTetra();
+        state.model.drop();
+        return state.model.tetra;
+    }
+
+    @Benchmark
+    public int[][] generateNext(BoardState state) {
+        state.model.generateNext();
+        return state.model.next;
+    }
+
+    // the setup of freezeAndClearFullLines alone, a freeze takes too little time for a per invocation setup, so
+    // it is measured together with its setup and this is the baseline to subtract
+    @Benchmark
+    public int[][] resetAndDrop(BoardState state) {
+        state.resetBoard();
+        state.resetTetra();
+        state.model.drop();
+        return state.model.tetra;
+    }
+
+    @Benchmark
+    public int freezeAndClearFullLines(BoardState state) {
+        state.resetBoard();
+        state.resetTetra();
+        state.model.drop();
+        state.model.freezeAndClearFullLines();
+        return state.model.score;
+    }
+}
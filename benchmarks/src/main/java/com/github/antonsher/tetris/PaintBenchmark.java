@@ -0,0 +1,88 @@
+package com.github.antonsher.tetris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+
+    @State(Scope.Thread)
+    public static class PaintState {
+        @Param({"0", "25", "50", "75"})
+        public int fill;
+
+        BoardState board;
+        Tetris tetris;
+        TetrisSnapshot snapshot;
+        // the same board taken again, a new layer for the renderer as after a lock
+        TetrisSnapshot relocked;
+        TetrisSnapshot current;
+        BoardPanel panel;
+        BufferedImage image;
+        Graphics2D graphics;
+
+        @Setup
+        public void setUp() {
+            board = new BoardState();
+            board.fill = fill;
+            board.kind = 1;
+            board.setUp();
+            tetris = new Tetris();
+            snapshot = TetrisSnapshot.of(board.model, null);
+            relocked = TetrisSnapshot.of(board.model, null);
+            current = snapshot;
+            panel = new BoardPanel(() -> current, Tetris.COLORS, tetris.CELL_SIZE);
+            panel.setBackground(Color.BLACK);
+            panel.setSize(tetris.boardWidth, tetris.height);
+            image = new BufferedImage(tetris.boardWidth, tetris.height, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+        }
+
+        @TearDown
+        public void tearDown() {
+            graphics.dispose();
+        }
+    }
+
+    // a frame in which only the tetra moved: the cached stack layer is blitted
+    @Benchmark
+    public BufferedImage paintComponent(PaintState state) {
+        state.panel.paintComponent(state.graphics);
+        return state.image;
+    }
+
+    // a frame right after a lock: the stack layer is rendered again first
+    @Benchmark
+    public BufferedImage paintAfterLock(PaintState state) {
+        state.current = state.current == state.snapshot ? state.relocked : state.snapshot;
+        state.panel.paintComponent(state.graphics);
+        return state.image;
+    }
+
+    // every tile painted from scratch, as before the render cache
+    @Benchmark
+    public BufferedImage paintBoard(PaintState state) {
+        BoardPanel.paintBoard(state.graphics, state.snapshot, Tetris.COLORS, state.tetris.CELL_SIZE,
+                state.tetris.boardWidth, state.tetris.height);
+        return state.image;
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+/**
+ * Picks a placement for the current tetra by trying every final position reachable by rotating at the spawn
+ * position, sliding sideways and dropping - the same moves the player has - and, for each of them, every
+ * placement of the next tetra. The boards are scored by a weighted sum of aggregate height, cleared lines,
+ * holes and bumpiness.
+ * <p>
+ * The search works on copies of the bit-rows with per-depth scratch buffers, so it does not allocate.
+ */
+public class AutoPlayer {
+    static final double HEIGHT_WEIGHT = -0.510066;
+    static final double LINES_WEIGHT = 0.760666;
+    static final double HOLES_WEIGHT = -0.35663;
+    static final double BUMPINESS_WEIGHT = -0.184483;
+    static final int DEPTH = 2;
+
+    private final TetrisModel model;
+    private final int width;
+    private final int height;
+    private final long fullRow;
+
+    // boards[d] is the board the piece of depth d is placed on, boards[0] is the model's own;
+    // tops[d] is its stack height and dirty[d] how far up the buffer may hold rows of earlier placements
+    private final long[][] boards;
+    private final int[] tops = new int[DEPTH + 1];
+    private final int[] dirty = new int[DEPTH + 1];
+    private final int[][][] orientations = new int[DEPTH][5][2];
+    private final int[][][] rotated = new int[DEPTH][5][2];
+    // masks of the current orientation per depth, relative to its lowest row and leftmost column
+    private final long[][] masks = new long[DEPTH][4];
+    private final int[] heights;
+
+    private int bestRotations;
+    private int bestShift;
+    private double bestScore;
+    public long placements;
+
+    public AutoPlayer(TetrisModel model) {
+        this.model = model;
+        width = model.getBoardWidth();
+        height = model.getBoardHeight();
+        fullRow = width == 64 ? -1L : (1L << width) - 1;
+        boards = new long[DEPTH + 1][height];
+        heights = new int[width];
+    }
+
+    // moves and drops the current tetra of the engine to the best placement found
+    public void play(TetrisEngine engine) {
+        plan();
+        for (int i = 0; i < bestRotations; i++) {
+            engine.input(Input.ROTATE);
+        }
+        for (int i = 0; i < Math.abs(bestShift); i++) {
+            engine.input(bestShift < 0 ? Input.LEFT : Input.RIGHT);
+        }
+        engine.input(Input.DROP);
+    }
+
+    public void plan() {
+        boards[0] = model.rows;
+        tops[0] = model.stackHeight;
+        bestRotations = 0;
+        bestShift = 0;
+        bestScore = Double.NEGATIVE_INFINITY;
+        search(0, model.tetra, 0);
+    }
+
+    public int getBestRotations() {
+        return bestRotations;
+    }
+
+    public int getBestShift() {
+        return bestShift;
+    }
+
+    // returns the best score reachable from placing the piece spawned as spawn on boards[depth]
+    private double search(int depth, int[][] spawn, int linesSoFar) {
+        long[] board = boards[depth];
+        int[][] orientation = orientations[depth];
+        copy(spawn, orientation);
+        double best = Double.NEGATIVE_INFINITY;
+        for (int rotation = 0; rotation < 4; rotation++) {
+            if (rotation > 0) {
+                model.rotate(orientation, rotated[depth]);
+                copy(rotated[depth], orientation);
+            }
+            int minX = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < 4; i++) {
+                minX = Math.min(minX, orientation[i][0]);
+                maxX = Math.max(maxX, orientation[i][0]);
+                minY = Math.min(minY, orientation[i][1]);
+                maxY = Math.max(maxY, orientation[i][1]);
+            }
+            long[] mask = masks[depth];
+            mask[0] = mask[1] = mask[2] = mask[3] = 0;
+            for (int i = 0; i < 4; i++) {
+                mask[orientation[i][1] - minY] |= 1L << (orientation[i][0] - minX);
+            }
+            int pieceWidth = maxX - minX + 1;
+            int pieceHeight = maxY - minY + 1;
+            if (!fits(board, mask, pieceWidth, pieceHeight, minX, minY)) {
+                // rotations are applied one after another, once one fails the rest cannot be reached either
+                break;
+            }
+
+            int left = minX;
+            while (fits(board, mask, pieceWidth, pieceHeight, left - 1, minY)) {
+                left--;
+            }
+            for (int x = left; fits(board, mask, pieceWidth, pieceHeight, x, minY); x++) {
+                // nothing above the stack can stop the piece
+                int y = Math.min(minY, tops[depth]);
+                while (fits(board, mask, pieceWidth, pieceHeight, x, y - 1)) {
+                    y--;
+                }
+                placements++;
+                long[] next = boards[depth + 1];
+                int lines = place(depth, mask, pieceHeight, x, y);
+                double score;
+                if (depth + 1 < DEPTH) {
+                    if (!canSpawn(next, model.next)) {
+                        score = Double.NEGATIVE_INFINITY;
+                    } else {
+                        score = search(depth + 1, model.next, linesSoFar + lines);
+                    }
+                } else {
+                    score = evaluate(next, tops[depth + 1], linesSoFar + lines);
+                }
+                if (score > best) {
+                    best = score;
+                }
+                if (depth == 0 && score > bestScore) {
+                    bestScore = score;
+                    bestRotations = rotation;
+                    bestShift = x - minX;
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean fits(long[] board, long[] mask, int pieceWidth, int pieceHeight, int x, int y) {
+        if (x < 0 || y < 0 || x + pieceWidth > width || y + pieceHeight > height) {
+            return false;
+        }
+        for (int i = 0; i < pieceHeight; i++) {
+            if (((mask[i] << x) & board[y + i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean canSpawn(long[] board, int[][] tetra) {
+        for (int i = 0; i < 4; i++) {
+            if ((board[tetra[i][1]] & (1L << tetra[i][0])) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // fills boards[depth + 1] with boards[depth] with the piece placed and the full rows cleared, returns the cleared rows
+    private int place(int depth, long[] mask, int pieceHeight, int x, int y) {
+        long[] board = boards[depth];
+        long[] result = boards[depth + 1];
+        int top = Math.max(tops[depth], y + pieceHeight);
+        // rows between the stack and the dirty height are empty in the source, copying them clears the buffer
+        System.arraycopy(board, 0, result, 0, Math.max(top, dirty[depth + 1]));
+        for (int i = 0; i < pieceHeight; i++) {
+            result[y + i] |= mask[i] << x;
+        }
+        int cleared = 0;
+        for (int i = 0; i < pieceHeight; i++) {
+            if (result[y + i] == fullRow) {
+                cleared++;
+            }
+        }
+        tops[depth + 1] = top - cleared;
+        dirty[depth + 1] = top;
+        if (cleared == 0) {
+            return 0;
+        }
+        int to = y;
+        for (int from = y; from < top; from++) {
+            long row = result[from];
+            if (from < y + pieceHeight && row == fullRow) {
+                continue;
+            }
+            result[to++] = row;
+        }
+        while (to < top) {
+            result[to++] = 0;
+        }
+        return cleared;
+    }
+
+    double evaluate(long[] board, int top, int lines) {
+        for (int x = 0; x < width; x++) {
+            heights[x] = 0;
+        }
+        long covered = 0;
+        int holes = 0;
+        for (int y = top - 1; y >= 0; y--) {
+            long row = board[y];
+            long appeared = row & ~covered;
+            while (appeared != 0) {
+                heights[Long.numberOfTrailingZeros(appeared)] = y + 1;
+                appeared &= appeared - 1;
+            }
+            holes += Long.bitCount(covered & ~row);
+            covered |= row;
+        }
+        int aggregateHeight = 0;
+        int bumpiness = 0;
+        for (int x = 0; x < width; x++) {
+            aggregateHeight += heights[x];
+            if (x > 0) {
+                bumpiness += Math.abs(heights[x] - heights[x - 1]);
+            }
+        }
+        return HEIGHT_WEIGHT * aggregateHeight + LINES_WEIGHT * lines + HOLES_WEIGHT * holes + BUMPINESS_WEIGHT * bumpiness;
+    }
+
+    private static void copy(int[][] from, int[][] to) {
+        for (int i = 0; i < 5; i++) {
+            to[i][0] = from[i][0];
+            to[i][1] = from[i][1];
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.antonsher.tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the game in progress in a {@link SavedGame} file. The game thread only encodes the game and its checksum,
+ * but that includes the whole replay so far, so every save costs time linear in the length of the game: about
+ * 4 bytes a piece, some 8 KB and a couple of microseconds after 2000 pieces. The file is written on a background
+ * thread to a temporary file which is then atomically renamed over the save, so a crash in the middle of a write
+ * leaves the previous save. Saves that come while one is being written are coalesced, only the latest one is
+ * written next.
+ */
+public class Autosaver {
+    // stands for deleting the save
+    private static final byte[] DISCARD = new byte[0];
+
+    private final Path file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Tetris autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+
+    public Autosaver(Path file) {
+        this.file = file;
+    }
+
+    // from the game thread, before it starts a game
+    public boolean resume(TetrisEngine engine) {
+        try {
+            return SavedGame.restore(file, engine);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // from the game thread, the game is copied right away
+    public void save(TetrisEngine engine) {
+        offer(SavedGame.encode(engine));
+    }
+
+    // once the game is over there is nothing to resume
+    public void discard() {
+        offer(DISCARD);
+    }
+
+    // writes what is still pending on the calling thread, e.g. on the way out
+    public void flush() {
+        write();
+    }
+
+    private void offer(byte[] record) {
+        // a write is scheduled only when none is pending, a pending one picks the newer record up
+        if (pending.getAndSet(record) == null) {
+            writer.execute(this::write);
+        }
+    }
+
+    private synchronized void write() {
+        byte[] record = pending.getAndSet(null);
+        if (record == null) {
+            return;
+        }
+        try {
+            if (record == DISCARD) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(record);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                // only left when the move failed
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.antonsher.tetris;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals the seven kinds in shuffled bags, so every kind comes once in every seven pieces
+ * and there are at most 12 pieces between two of the same kind.
+ */
+public class BagGenerator implements PieceGenerator {
+    private SplittableRandom random = new SplittableRandom();
+    private final int[] bag = new int[KINDS];
+    private int dealt = KINDS;
+
+    @Override
+    public int id() {
+        return BAG;
+    }
+
+    @Override
+    public void reset(long seed) {
+        random = new SplittableRandom(seed);
+        dealt = KINDS;
+    }
+
+    @Override
+    public void fill(int[] pieces, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            if (dealt == KINDS) {
+                shuffle();
+            }
+            pieces[i] = PieceGenerator.orientation(bag[dealt++], random);
+        }
+    }
+
+    private void shuffle() {
+        for (int i = 0; i < KINDS; i++) {
+            int j = random.nextInt(i + 1);
+            bag[i] = bag[j];
+            bag[j] = i + 1;
+        }
+        dealt = 0;
+    }
+}
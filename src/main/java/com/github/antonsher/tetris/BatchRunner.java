@@ -0,0 +1,171 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Plays many seeded headless games in parallel and prints the distributions of the results.
+ * <p>
+ * Usage: {@code BatchRunner [--ai] [--width=10] [--height=20] [--generator=bag] [games] [seed] [threads] [maxPieces] [replayDir]}
+ * <p>
+ * Games are played with random inputs, or by the {@link AutoPlayer} with {@code --ai}.
+ */
+public class BatchRunner {
+    static final Input[] INPUTS = Input.values();
+
+    final int games;
+    final long seed;
+    final int threads;
+    final int maxPieces;
+    final Path replayDir;
+    final boolean ai;
+    int columns = 10;
+    int rows = 20;
+    String generator = PieceGenerator.NAMES[PieceGenerator.BAG];
+
+    final int[] scores;
+    final int[] lines;
+    final int[] levels;
+    final int[] pieces;
+
+    public BatchRunner(int games, long seed, int threads, int maxPieces, Path replayDir, boolean ai) {
+        this.games = games;
+        this.seed = seed;
+        this.threads = threads;
+        this.maxPieces = maxPieces;
+        this.replayDir = replayDir;
+        this.ai = ai;
+        scores = new int[games];
+        lines = new int[games];
+        levels = new int[games];
+        pieces = new int[games];
+    }
+
+    public static void main(String[] arguments) throws Exception {
+        boolean ai = false;
+        int columns = 10;
+        int rows = 20;
+        String generator = PieceGenerator.NAMES[PieceGenerator.BAG];
+        List<String> positional = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.equals("--ai")) {
+                ai = true;
+            } else if (argument.startsWith("--width=")) {
+                columns = Integer.parseInt(argument.substring("--width=".length()));
+            } else if (argument.startsWith("--height=")) {
+                rows = Integer.parseInt(argument.substring("--height=".length()));
+            } else if (argument.startsWith("--generator=")) {
+                generator = argument.substring("--generator=".length());
+                PieceGenerator.forName(generator);
+            } else {
+                positional.add(argument);
+            }
+        }
+        String[] args = positional.toArray(new String[0]);
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxPieces = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        Path replayDir = args.length > 4 ? Paths.get(args[4]) : null;
+        if (replayDir != null) {
+            Files.createDirectories(replayDir);
+        }
+
+        BatchRunner runner = new BatchRunner(games, seed, threads, maxPieces, replayDir, ai);
+        runner.columns = columns;
+        runner.rows = rows;
+        runner.generator = generator;
+        long start = System.nanoTime();
+        runner.run();
+        long elapsed = System.nanoTime() - start;
+        runner.report(elapsed);
+    }
+
+    public void run() throws Exception {
+        // every game gets its own stream split off the batch seed, so a game's outcome
+        // depends only on its index and not on the thread that happened to play it
+        long[] seeds = new long[games];
+        SplittableRandom batchRandom = new SplittableRandom(seed);
+        for (int i = 0; i < games; i++) {
+            seeds[i] = batchRandom.nextLong();
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, games).parallel().forEach(i -> play(i, seeds[i]))).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    void play(int game, long gameSeed) {
+        SplittableRandom inputRandom = new SplittableRandom(gameSeed);
+        TetrisEngine engine = new TetrisEngine(new TetrisModel(columns, rows, gameSeed));
+        TetrisModel model = engine.model;
+        model.pieceQueue = new PieceQueue(PieceGenerator.forName(generator));
+        if (replayDir != null) {
+            engine.recorder = new ReplayRecorder();
+        }
+        AutoPlayer player = ai ? new AutoPlayer(model) : null;
+        engine.start();
+        while (!engine.isOver() && engine.pieces < maxPieces) {
+            if (player != null) {
+                player.play(engine);
+                engine.tick();
+            } else {
+                engine.step(INPUTS[inputRandom.nextInt(INPUTS.length)]);
+            }
+        }
+        if (engine.recorder != null) {
+            engine.recorder.finish(engine);
+            try {
+                engine.recorder.writeTo(replayDir.resolve("game-" + game + ReplayRecorder.EXTENSION));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        scores[game] = model.score;
+        lines[game] = model.lines;
+        levels[game] = model.level;
+        pieces[game] = engine.pieces;
+    }
+
+    void report(long elapsedNanos) {
+        System.out.printf("%dx%d board, %s pieces, %d games on %d threads in %.3f s, %.1f games/s%n",
+                columns, rows, generator, games, threads, elapsedNanos / 1e9, games / (elapsedNanos / 1e9));
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "", "min", "mean", "p50", "p90", "p99", "max");
+        printDistribution("score", scores);
+        printDistribution("lines", lines);
+        printDistribution("level", levels);
+        printDistribution("pieces", pieces);
+    }
+
+    static void printDistribution(String name, int[] values) {
+        if (values.length == 0) {
+            return;
+        }
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (int value : sorted) {
+            sum += value;
+        }
+        System.out.printf("%-8s %10d %10.1f %10d %10d %10d %10d%n", name, sorted[0], (double) sum / sorted.length,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[sorted.length - 1]);
+    }
+
+    static int percentile(int[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.antonsher.tetris;
+
+/**
+ * Many bit-row boards of the same size in a struct-of-arrays layout for a {@link BoardEvaluator}: row y of board b
+ * is {@code rows[y * capacity + b]}, so the same row of consecutive boards is contiguous and can be loaded into the
+ * lanes of one vector. The features the evaluator computes land in one array per feature, indexed by board.
+ */
+public class BoardBatch {
+    // the capacity is padded to a multiple of 512 bit vectors, so their loads never run past a row; the evaluator
+    // masks the last load of wider ones
+    static final int LANE_MULTIPLE = 8;
+
+    public final int width;
+    public final int height;
+    public final int capacity;
+    final long fullRow;
+    final long[] rows;
+    // stack height of every board, and how far up its slot may still hold rows of an earlier board
+    final int[] tops;
+    private final int[] dirty;
+    public int size;
+
+    // inputs to the score, the lines cleared on the way to every board
+    public final int[] lines;
+    // features: the sum and the maximum of the column heights, the empty cells below the top of their column,
+    // the sum of height differences of neighbouring columns, and the filled/empty changes along the rows
+    // including both walls, counted over the whole board height
+    public final int[] aggregateHeight;
+    public final int[] maxHeight;
+    public final int[] holes;
+    public final int[] bumpiness;
+    public final int[] rowTransitions;
+    // the AutoPlayer's weighted sum of the features
+    public final double[] scores;
+
+    public BoardBatch(int width, int height, int capacity) {
+        this.width = width;
+        this.height = height;
+        this.capacity = (capacity + LANE_MULTIPLE - 1) / LANE_MULTIPLE * LANE_MULTIPLE;
+        fullRow = width == 64 ? -1L : (1L << width) - 1;
+        rows = new long[height * this.capacity];
+        tops = new int[this.capacity];
+        dirty = new int[this.capacity];
+        lines = new int[this.capacity];
+        aggregateHeight = new int[this.capacity];
+        maxHeight = new int[this.capacity];
+        holes = new int[this.capacity];
+        bumpiness = new int[this.capacity];
+        rowTransitions = new int[this.capacity];
+        scores = new double[this.capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // copies the rows below top of the board into the next slot, returns the index of the slot
+    public int add(long[] board, int top, int clearedLines) {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full: " + capacity);
+        }
+        int b = size++;
+        for (int y = 0; y < top; y++) {
+            rows[y * capacity + b] = board[y];
+        }
+        for (int y = top; y < dirty[b]; y++) {
+            rows[y * capacity + b] = 0;
+        }
+        tops[b] = top;
+        dirty[b] = top;
+        lines[b] = clearedLines;
+        return b;
+    }
+
+    public long getRow(int board, int y) {
+        return rows[y * capacity + board];
+    }
+
+    // the highest stack among the boards from index from (inclusive) to to (exclusive)
+    int maxTop(int from, int to) {
+        int top = 0;
+        for (int b = from; b < to; b++) {
+            top = Math.max(top, tops[b]);
+        }
+        return top;
+    }
+
+    void score(int from, int to) {
+        for (int b = from; b < to; b++) {
+            scores[b] = AutoPlayer.HEIGHT_WEIGHT * aggregateHeight[b] + AutoPlayer.LINES_WEIGHT * lines[b]
+                    + AutoPlayer.HOLES_WEIGHT * holes[b] + AutoPlayer.BUMPINESS_WEIGHT * bumpiness[b];
+        }
+    }
+}
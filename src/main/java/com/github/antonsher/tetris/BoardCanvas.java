@@ -0,0 +1,103 @@
+package com.github.antonsher.tetris;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Active-rendering alternative to {@link BoardPanel}: a render thread draws the board into a
+ * {@link BufferStrategy} at most {@code targetFps} times per second, and only when a new snapshot was published.
+ */
+public class BoardCanvas extends Canvas implements Runnable {
+    private final Supplier<TetrisSnapshot> snapshots;
+    private final BoardRenderer renderer;
+    private final int targetFps;
+    private final IntConsumer fpsListener;
+    private volatile boolean frameRequested = true;
+
+    BoardCanvas(Supplier<TetrisSnapshot> snapshots, Color[] colors, int cell_size, int targetFps, IntConsumer fpsListener) {
+        this.snapshots = snapshots;
+        renderer = new BoardRenderer(colors, cell_size);
+        this.targetFps = targetFps;
+        this.fpsListener = fpsListener;
+        setIgnoreRepaint(true);
+    }
+
+    public void start() {
+        createBufferStrategy(2);
+        Thread renderer = new Thread(this, "Tetris renderer");
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    public void requestFrame() {
+        frameRequested = true;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        // the window was exposed or resized, the next frame has to be drawn even if the model did not change
+        requestFrame();
+    }
+
+    @Override
+    public void run() {
+        long frameNanos = TimeUnit.SECONDS.toNanos(1) / targetFps;
+        long nextFrame = System.nanoTime();
+        long fpsWindowStart = nextFrame;
+        int frames = 0;
+        TetrisSnapshot rendered = null;
+        while (true) {
+            TetrisSnapshot snapshot = snapshots.get();
+            if (frameRequested || snapshot != rendered) {
+                frameRequested = false;
+                rendered = snapshot;
+                render(snapshot);
+                frames++;
+            }
+
+            long now = System.nanoTime();
+            if (now - fpsWindowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                fpsListener.accept((int) (frames * TimeUnit.SECONDS.toNanos(1) / (now - fpsWindowStart)));
+                fpsWindowStart = now;
+                frames = 0;
+            }
+
+            nextFrame += frameNanos;
+            long sleep = nextFrame - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            } else {
+                // we are late, drop the missed frames instead of rendering them back to back
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    private void render(TetrisSnapshot snapshot) {
+        long start = TetrisMetrics.ENABLED ? System.nanoTime() : 0;
+        BufferStrategy strategy = getBufferStrategy();
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    renderer.paint(g, snapshot, getGraphicsConfiguration(), getWidth(), getHeight());
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        Startup.framePainted(snapshot);
+        if (TetrisMetrics.ENABLED) {
+            TetrisMetrics.INSTANCE.framePainted(start);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.antonsher.tetris;
+
+/**
+ * Computes the features and scores of all boards of a {@link BoardBatch}.
+ */
+public interface BoardEvaluator {
+    void evaluate(BoardBatch batch);
+
+    // the Vector API evaluator when the JVM runs with --add-modules jdk.incubator.vector, the scalar one otherwise
+    // or with -Dtetris.scalar=true
+    static BoardEvaluator create() {
+        if (!Boolean.getBoolean("tetris.scalar")) {
+            try {
+                return (BoardEvaluator) Class.forName("com.github.antonsher.tetris.VectorBoardEvaluator")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the incubator module is not there
+            }
+        }
+        return new ScalarBoardEvaluator();
+    }
+}
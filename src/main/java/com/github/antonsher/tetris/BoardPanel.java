@@ -1,39 +1,92 @@
 package com.github.antonsher.tetris;
 
+import com.github.antonsher.tetris.TetrisModel.State;
+
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import java.util.function.Supplier;
 
 import javax.swing.JPanel;
 
 public class BoardPanel extends JPanel {
-    private final TetrisModel model;
-    private final Color[] COLORS;
+    private final Supplier<TetrisSnapshot> snapshots;
     private final int CELL_SIZE;
+    private final BoardRenderer renderer;
 
-    BoardPanel(TetrisModel model, Color[] colors, int cell_size) {
-        this.model = model;
-        COLORS = colors;
+    BoardPanel(Supplier<TetrisSnapshot> snapshots, Color[] colors, int cell_size) {
+        this.snapshots = snapshots;
         CELL_SIZE = cell_size;
+        renderer = new BoardRenderer(colors, cell_size);
     }
 
     @Override
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        long start = TetrisMetrics.ENABLED ? System.nanoTime() : 0;
+        // the renderer covers every pixel of the clip, there is no background left to clear
+        TetrisSnapshot snapshot = snapshots.get();
+        renderer.paint(g, snapshot, getGraphicsConfiguration(), getWidth(), getHeight());
+        Startup.framePainted(snapshot);
+        if (TetrisMetrics.ENABLED) {
+            TetrisMetrics.INSTANCE.framePainted(start);
+        }
+    }
+
+    // the pixels of the tetra, for keeping it in view when the board scrolls
+    Rectangle tetraBounds() {
+        TetrisSnapshot snapshot = snapshots.get();
+        int top = Integer.MIN_VALUE;
+        int bottom = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            top = Math.max(top, snapshot.getTetraY(i, snapshot.tetra));
+            bottom = Math.min(bottom, snapshot.getTetraY(i, snapshot.tetra));
+        }
+        int cell = CELL_SIZE + 1;
+        return new Rectangle(0, (snapshot.getBoardHeight() - 1 - top) * cell, getWidth(), (top - bottom + 1) * cell + 1);
+    }
+
+    // the ghost marks where a drop would land the tetra while it can still be moved
+    static boolean showsGhost(TetrisSnapshot snapshot) {
+        return snapshot.dropDistance > 0 && snapshot.state != State.LOST && snapshot.state != State.PLACE_NEXT;
+    }
+
+    // paints every tile from scratch, without the caches of BoardRenderer
+    static void paintBoard(Graphics g, TetrisSnapshot snapshot, Color[] colors, int cellSize, int width, int height) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
         g.setColor(Color.BLACK);
-        g.fillRect(0, 0, getWidth(), getHeight());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int boardHeight = snapshot.getBoardHeight();
+        int cell = cellSize + 1;
+        if (showsGhost(snapshot)) {
+            final int[][] tetra = snapshot.tetra;
+            g.setColor(colors[snapshot.getTetraKind(tetra)]);
+            for (int i = 0; i < 4; i++) {
+                int x = snapshot.getTetraX(i, tetra);
+                int y = snapshot.getTetraY(i, tetra) - snapshot.dropDistance;
+                g.drawRect(1 + x * cell, 1 + (boardHeight - 1 - y) * cell, cellSize - 1, cellSize - 1);
+            }
+        }
         for (int i = 0; i < 4; i++) {
-            final int[][] tetra = model.tetra;
-            int x = model.getTetraX(i, tetra);
-            int y = model.getTetraY(i, tetra);
-            g.setColor(COLORS[model.getTetraKind(tetra)]);
-            g.fillRect(1 + x * (CELL_SIZE + 1), 1 + (19 - y) * (CELL_SIZE + 1), CELL_SIZE, CELL_SIZE);
+            final int[][] tetra = snapshot.tetra;
+            int x = snapshot.getTetraX(i, tetra);
+            int y = snapshot.getTetraY(i, tetra);
+            g.setColor(colors[snapshot.getTetraKind(tetra)]);
+            g.fillRect(1 + x * cell, 1 + (boardHeight - 1 - y) * cell, cellSize, cellSize);
         }
-        for (int x = 0; x < model.getBoardWidth(); x++) {
-            for (int y = 0; y < model.getBoardHeight(); y++) {
-                if (model.getBoardTile(x, y) > 0) {
-                    g.setColor(COLORS[model.getBoardTile(x, y)]);
-                    g.fillRect(1 + x * (CELL_SIZE + 1), 1 + (19 - y) * (CELL_SIZE + 1), CELL_SIZE, CELL_SIZE);
-                }
+        // only the stack rows inside the clip, and only their occupied cells
+        int lowest = Math.max(0, boardHeight - 1 - (clip.y + clip.height) / cell);
+        int highest = Math.min(snapshot.getStackHeight() - 1, boardHeight - 1 - clip.y / cell + 1);
+        for (int y = lowest; y <= highest; y++) {
+            long row = snapshot.rows[y];
+            while (row != 0) {
+                int x = Long.numberOfTrailingZeros(row);
+                g.setColor(colors[snapshot.getBoardTile(x, y)]);
+                g.fillRect(1 + x * cell, 1 + (boardHeight - 1 - y) * cell, cellSize, cellSize);
+                row &= row - 1;
             }
         }
     }
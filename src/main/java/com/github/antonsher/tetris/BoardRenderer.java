@@ -0,0 +1,146 @@
+package com.github.antonsher.tetris;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Paints boards from cached images: one sprite per tile color at the cell size, and the locked stack prerendered
+ * into an offscreen layer. The layer is redrawn only when the snapshot carries a different {@link BoardSnapshot},
+ * which happens when a tetra locks, lines clear or a game starts, so a normal frame is one blit of the layer
+ * plus the four tiles of the tetra.
+ * <p>
+ * A board whose layer would exceed {@link #MAX_LAYER_PIXELS} is painted tile by tile instead.
+ */
+public class BoardRenderer {
+    static final long MAX_LAYER_PIXELS = 4 << 20;
+
+    private final Color[] colors;
+    private final int cellSize;
+    private GraphicsConfiguration configuration;
+    private BufferedImage[] sprites;
+    private BufferedImage[] ghostSprites;
+    private BufferedImage layer;
+    private BoardSnapshot layerBoard;
+
+    BoardRenderer(Color[] colors, int cellSize) {
+        this.colors = colors;
+        this.cellSize = cellSize;
+    }
+
+    // images are made compatible with the given screen, or plain RGB images without one
+    void paint(Graphics g, TetrisSnapshot snapshot, GraphicsConfiguration configuration, int width, int height) {
+        if (configuration != this.configuration || sprites == null) {
+            this.configuration = configuration;
+            sprites = createSprites(false);
+            ghostSprites = createSprites(true);
+            layer = null;
+        }
+        int cell = cellSize + 1;
+        int boardHeight = snapshot.getBoardHeight();
+        int layerWidth = snapshot.getBoardWidth() * cell + 1;
+        int layerHeight = boardHeight * cell + 1;
+        if ((long) layerWidth * layerHeight > MAX_LAYER_PIXELS) {
+            BoardPanel.paintBoard(g, snapshot, colors, cellSize, width, height);
+            return;
+        }
+        if (layer == null || layer.getWidth() != layerWidth || layer.getHeight() != layerHeight) {
+            layer = createImage(layerWidth, layerHeight);
+            layerBoard = null;
+        }
+        if (snapshot.board != layerBoard) {
+            renderLayer(snapshot.board);
+            layerBoard = snapshot.board;
+        }
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, width, height);
+        }
+        // the empty rows above the stack and whatever lies outside the board are plain fills,
+        // only the stack itself is copied from the layer
+        int stackTop = (boardHeight - snapshot.getStackHeight()) * cell;
+        int right = Math.min(clip.x + clip.width, layerWidth);
+        int bottom = Math.min(clip.y + clip.height, layerHeight);
+        int top = Math.max(clip.y, stackTop);
+        g.setColor(Color.BLACK);
+        g.fillRect(clip.x, clip.y, clip.width, top - clip.y);
+        if (right > clip.x && bottom > top) {
+            g.drawImage(layer, clip.x, top, right, bottom, clip.x, top, right, bottom, null);
+        }
+        g.fillRect(right, top, clip.x + clip.width - right, clip.y + clip.height - top);
+        g.fillRect(clip.x, bottom, right - clip.x, clip.y + clip.height - bottom);
+        int[][] tetra = snapshot.tetra;
+        if (BoardPanel.showsGhost(snapshot)) {
+            // the ghost lands on free cells, which are all black at this point
+            BufferedImage ghost = ghostSprites[snapshot.getTetraKind(tetra)];
+            for (int i = 0; i < 4; i++) {
+                int x = snapshot.getTetraX(i, tetra);
+                int y = snapshot.getTetraY(i, tetra) - snapshot.dropDistance;
+                g.drawImage(ghost, 1 + x * cell, 1 + (boardHeight - 1 - y) * cell, null);
+            }
+        }
+        BufferedImage sprite = sprites[snapshot.getTetraKind(tetra)];
+        for (int i = 0; i < 4; i++) {
+            int x = snapshot.getTetraX(i, tetra);
+            int y = snapshot.getTetraY(i, tetra);
+            // after game over the last tetra can overlap the stack, which is drawn over it
+            if (snapshot.board.isOccupied(x, y)) {
+                continue;
+            }
+            g.drawImage(sprite, 1 + x * cell, 1 + (boardHeight - 1 - y) * cell, null);
+        }
+    }
+
+    private void renderLayer(BoardSnapshot board) {
+        Graphics g = layer.createGraphics();
+        try {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+            int cell = cellSize + 1;
+            int boardHeight = board.getBoardHeight();
+            for (int y = 0; y < board.getStackHeight(); y++) {
+                long row = board.rows[y];
+                while (row != 0) {
+                    int x = Long.numberOfTrailingZeros(row);
+                    g.drawImage(sprites[board.getBoardTile(x, y)], 1 + x * cell, 1 + (boardHeight - 1 - y) * cell, null);
+                    row &= row - 1;
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // ghost sprites are only the outline of a tile
+    private BufferedImage[] createSprites(boolean ghost) {
+        BufferedImage[] created = new BufferedImage[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            created[i] = createImage(cellSize, cellSize);
+            Graphics g = created[i].createGraphics();
+            try {
+                if (ghost) {
+                    g.setColor(Color.BLACK);
+                    g.fillRect(0, 0, cellSize, cellSize);
+                    g.setColor(colors[i]);
+                    g.drawRect(0, 0, cellSize - 1, cellSize - 1);
+                } else {
+                    g.setColor(colors[i]);
+                    g.fillRect(0, 0, cellSize, cellSize);
+                }
+            } finally {
+                g.dispose();
+            }
+        }
+        return created;
+    }
+
+    private BufferedImage createImage(int width, int height) {
+        return configuration != null
+                ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.antonsher.tetris;
+
+import java.util.Arrays;
+
+/**
+ * A persistent version of the board of a {@link TetrisModel}. Taking one copies the bit-rows and the references
+ * to the color rows of the stack, but no tiles: the color rows are shared between the model and all snapshots,
+ * and the model copies a shared row before it writes to it. Consecutive versions thus only differ in the few rows
+ * a locked tetra touched.
+ */
+public final class BoardSnapshot {
+    // only the rows below the stack height, all rows above are empty; never written after construction
+    final long[] rows;
+    final int[][] colors;
+    final int width;
+    final int height;
+
+    private BoardSnapshot(long[] rows, int[][] colors, int width, int height) {
+        this.rows = rows;
+        this.colors = colors;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static BoardSnapshot of(TetrisModel model) {
+        int stackHeight = model.stackHeight;
+        Arrays.fill(model.sharedRows, 0, stackHeight, true);
+        return new BoardSnapshot(Arrays.copyOf(model.rows, stackHeight), Arrays.copyOf(model.colors, stackHeight),
+                model.getBoardWidth(), model.getBoardHeight());
+    }
+
+    // makes this the board of the model, e.g. to undo or to branch a search off it, without copying any tiles
+    public void restoreTo(TetrisModel model) {
+        if (model.getBoardWidth() != width || model.getBoardHeight() != height) {
+            throw new IllegalArgumentException("Snapshot of a " + width + "x" + height + " board does not fit a "
+                    + model.getBoardWidth() + "x" + model.getBoardHeight() + " board");
+        }
+        for (int y = rows.length; y < model.stackHeight; y++) {
+            model.rows[y] = 0;
+            if (model.sharedRows[y]) {
+                model.colors[y] = new int[width];
+                model.sharedRows[y] = false;
+            } else {
+                Arrays.fill(model.colors[y], 0);
+            }
+        }
+        System.arraycopy(rows, 0, model.rows, 0, rows.length);
+        System.arraycopy(colors, 0, model.colors, 0, colors.length);
+        Arrays.fill(model.sharedRows, 0, rows.length, true);
+        model.stackHeight = rows.length;
+        model.updateColumnHeights();
+        model.boardChanges++;
+        model.changes++;
+    }
+
+    public int getBoardTile(int x, int y) {
+        return y < colors.length ? colors[y][x] : 0;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        return y < rows.length && (rows[y] & 1L << x) != 0;
+    }
+
+    public int getBoardWidth() {
+        return width;
+    }
+
+    public int getBoardHeight() {
+        return height;
+    }
+
+    public int getStackHeight() {
+        return rows.length;
+    }
+}
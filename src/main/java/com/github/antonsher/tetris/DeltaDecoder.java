@@ -0,0 +1,82 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisModel.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Applies messages written by {@link DeltaEncoder} to a mirror {@link TetrisModel}.
+ */
+public class DeltaDecoder {
+    static final State[] STATES = State.values();
+
+    private TetrisModel mirror;
+
+    public TetrisModel getMirror() {
+        return mirror;
+    }
+
+    public int decode(ByteBuffer in) {
+        int flags = in.get();
+        if ((flags & DeltaEncoder.KEYFRAME) != 0) {
+            int width = in.getShort() & 0xFFFF;
+            int height = in.getShort() & 0xFFFF;
+            if (mirror == null || mirror.getBoardWidth() != width || mirror.getBoardHeight() != height) {
+                mirror = new TetrisModel(width, height);
+            }
+            mirror.reset();
+        }
+        if (mirror == null) {
+            throw new IllegalStateException("The stream has to start with a keyframe");
+        }
+        if ((flags & DeltaEncoder.TETRA) != 0) {
+            getTetra(in, mirror.tetra);
+        }
+        if ((flags & DeltaEncoder.MOVE) != 0) {
+            int dx = in.get();
+            int dy = in.get();
+            for (int i = 0; i < 4; i++) {
+                mirror.tetra[i][0] += dx;
+                mirror.tetra[i][1] += dy;
+            }
+        }
+        if ((flags & DeltaEncoder.NEXT) != 0) {
+            getTetra(in, mirror.next);
+        }
+        if ((flags & DeltaEncoder.STATS) != 0) {
+            mirror.score = in.getInt();
+            mirror.lines = in.getInt();
+            mirror.level = in.getShort();
+        }
+        if ((flags & DeltaEncoder.STATE) != 0) {
+            mirror.state = STATES[in.get()];
+        }
+        if ((flags & DeltaEncoder.BOARD) != 0) {
+            int count = in.getShort() & 0xFFFF;
+            int width = mirror.getBoardWidth();
+            for (int i = 0; i < count; i++) {
+                int y = in.getShort() & 0xFFFF;
+                for (int x = 0; x < width; x += 2) {
+                    int packed = in.get();
+                    mirror.setBoardTile(x, y, (packed >> 4) & 0xF);
+                    if (x + 1 < width) {
+                        mirror.setBoardTile(x + 1, y, packed & 0xF);
+                    }
+                }
+            }
+            while (mirror.stackHeight > 0 && mirror.rows[mirror.stackHeight - 1] == 0) {
+                mirror.stackHeight--;
+            }
+        }
+        mirror.changes++;
+        return flags;
+    }
+
+    private static void getTetra(ByteBuffer in, int[][] tetra) {
+        tetra[4][0] = in.get();
+        for (int i = 0; i < 4; i++) {
+            tetra[i][0] = in.get();
+            tetra[i][1] = in.getShort() & 0xFFFF;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.antonsher.tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes the changes of a {@link TetrisModel} since the previous message into a compact binary message:
+ * <pre>
+ * byte  flags
+ * [KEYFRAME] short width, short height         - the receiver starts from an empty board
+ * [TETRA]    byte kind, 4 x (byte x, short y)
+ * [MOVE]     byte dx, byte dy                  - instead of TETRA when the tetra only shifted
+ * [NEXT]     byte kind, 4 x (byte x, short y)
+ * [STATS]    int score, int lines, short level
+ * [STATE]    byte state ordinal
+ * [BOARD]    short count, count x (short y, one nibble per column holding the tile color)
+ * </pre>
+ * Sizes, counts and y coordinates are unsigned shorts, which bounds the board at {@link TetrisModel#MAX_HEIGHT} rows.
+ * Only the rows that differ from what was last sent are included. The encoder keeps its own copy of the sent
+ * board, so its memory is bounded by the board size.
+ */
+public class DeltaEncoder {
+    static final int KEYFRAME = 1;
+    static final int TETRA = 2;
+    static final int NEXT = 4;
+    static final int STATS = 8;
+    static final int STATE = 16;
+    static final int BOARD = 32;
+    static final int MOVE = 64;
+
+    private final int width;
+    private final long[] sentRows;
+    private final int[][] sentColors;
+    private int sentStackHeight;
+    private final int[] sentTetra = new int[9];
+    private final int[] sentNext = new int[9];
+    private int sentScore;
+    private int sentLines;
+    private int sentLevel;
+    private int sentState;
+    private int sentChanges;
+    private int sentBoardChanges;
+    private boolean started;
+
+    public DeltaEncoder(int width, int height) {
+        this.width = width;
+        sentRows = new long[height];
+        sentColors = new int[height][width];
+    }
+
+    // the largest message for a board of the given size
+    public static int maxMessageSize(int width, int height) {
+        return 1 + 4 + 2 * 13 + 10 + 1 + 2 + height * (2 + (width + 1) / 2);
+    }
+
+    // appends a message to out and returns its flags, 0 when nothing changed and nothing was written
+    public int encode(TetrisModel model, ByteBuffer out, boolean keyframe) {
+        keyframe |= !started;
+        if (!keyframe && model.changes == sentChanges && model.state.ordinal() == sentState) {
+            return 0;
+        }
+        int flagsPosition = out.position();
+        out.put((byte) 0);
+        int flags = 0;
+        if (keyframe) {
+            flags |= KEYFRAME;
+            out.putShort((short) model.getBoardWidth());
+            out.putShort((short) model.getBoardHeight());
+            for (int y = 0; y < sentStackHeight; y++) {
+                sentRows[y] = 0;
+                Arrays.fill(sentColors[y], 0);
+            }
+            sentStackHeight = 0;
+        }
+        if (!keyframe && isShifted(model.tetra, sentTetra)) {
+            flags |= MOVE;
+            int dx = model.tetra[0][0] - sentTetra[0];
+            int dy = model.tetra[0][1] - sentTetra[1];
+            out.put((byte) dx);
+            out.put((byte) dy);
+            for (int i = 0; i < 4; i++) {
+                sentTetra[2 * i] += dx;
+                sentTetra[2 * i + 1] += dy;
+            }
+        } else if (keyframe || differs(model.tetra, sentTetra)) {
+            flags |= TETRA;
+            putTetra(model.tetra, sentTetra, out);
+        }
+        if (keyframe || differs(model.next, sentNext)) {
+            flags |= NEXT;
+            putTetra(model.next, sentNext, out);
+        }
+        if (keyframe || model.score != sentScore || model.lines != sentLines || model.level != sentLevel) {
+            flags |= STATS;
+            out.putInt(sentScore = model.score);
+            out.putInt(sentLines = model.lines);
+            out.putShort((short) (sentLevel = model.level));
+        }
+        if (keyframe || model.state.ordinal() != sentState) {
+            flags |= STATE;
+            out.put((byte) (sentState = model.state.ordinal()));
+        }
+        if (keyframe || model.boardChanges != sentBoardChanges) {
+            int countPosition = out.position();
+            out.putShort((short) 0);
+            int count = 0;
+            int top = Math.max(model.stackHeight, sentStackHeight);
+            for (int y = 0; y < top; y++) {
+                if (model.rows[y] == sentRows[y] && rowColorsEqual(model.colors[y], sentColors[y])) {
+                    continue;
+                }
+                count++;
+                out.putShort((short) y);
+                int[] colors = model.colors[y];
+                for (int x = 0; x < width; x += 2) {
+                    int high = colors[x];
+                    int low = x + 1 < width ? colors[x + 1] : 0;
+                    out.put((byte) (high << 4 | low));
+                }
+                sentRows[y] = model.rows[y];
+                System.arraycopy(colors, 0, sentColors[y], 0, width);
+            }
+            sentStackHeight = model.stackHeight;
+            if (count > 0 || keyframe) {
+                flags |= BOARD;
+                out.putShort(countPosition, (short) count);
+            } else {
+                out.position(countPosition);
+            }
+        }
+        sentChanges = model.changes;
+        sentBoardChanges = model.boardChanges;
+        started = true;
+        out.put(flagsPosition, (byte) flags);
+        return flags;
+    }
+
+    private static boolean rowColorsEqual(int[] a, int[] b) {
+        for (int x = 0; x < a.length; x++) {
+            if (a[x] != b[x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean differs(int[][] tetra, int[] sent) {
+        if (tetra[4][0] != sent[8]) {
+            return true;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (tetra[i][0] != sent[2 * i] || tetra[i][1] != sent[2 * i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the same tetra moved by a few cells, as by every gravity tick and most inputs
+    private static boolean isShifted(int[][] tetra, int[] sent) {
+        if (tetra[4][0] != sent[8]) {
+            return false;
+        }
+        int dx = tetra[0][0] - sent[0];
+        int dy = tetra[0][1] - sent[1];
+        if (dx == 0 && dy == 0 || dx != (byte) dx || dy != (byte) dy) {
+            return false;
+        }
+        for (int i = 1; i < 4; i++) {
+            if (tetra[i][0] - sent[2 * i] != dx || tetra[i][1] - sent[2 * i + 1] != dy) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putTetra(int[][] tetra, int[] sent, ByteBuffer out) {
+        out.put((byte) (sent[8] = tetra[4][0]));
+        for (int i = 0; i < 4; i++) {
+            out.put((byte) (sent[2 * i] = tetra[i][0]));
+            out.putShort((short) (sent[2 * i + 1] = tetra[i][1]));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.github.antonsher.tetris;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Turns replays into video frames without a display. Frames are painted by the same {@link BoardRenderer} and
+ * {@link NextPanel#paintNext} as the window, into a fixed pool of offscreen images, and encoded on a bounded pool of
+ * worker threads while the next ones are painted. A frame that shows nothing new is neither painted nor encoded,
+ * the previous one stands for it.
+ * <p>
+ * Usage: {@code FrameExporter [--rgb] [--fps=0] [--cell=20] [--threads=N] replay.ttr [directory]}
+ * <p>
+ * Without a frame rate every tick is a frame. With {@code --fps} every tick lasts the gravity period of its level, as
+ * if the player never dropped, and is shown on as many frames as fall into it.
+ * Frames go to {@code <frame>.png} files in the directory ({@code frames} by default), only those that changed.
+ * With {@code --rgb} every frame is written to standard output instead as raw 8 bit RGB, to be piped into an encoder,
+ * e.g. {@code ffmpeg -f rawvideo -pixel_format rgb24 -video_size WxH -framerate 60 -i - game.mp4} with the size
+ * printed on standard error.
+ */
+public class FrameExporter implements Closeable {
+    static final int NEXT_SIZE = 85;
+    static final int MARGIN = 10;
+
+    private final int width;
+    private final int height;
+    private final int boardWidth;
+    private final int boardHeight;
+    private final Path directory;
+    private final OutputStream rgbOut;
+    private final BoardRenderer renderer;
+    private final ExecutorService encoders;
+    // frames in the order they were painted, the oldest is the next one to be written and reused
+    private final ArrayDeque<Frame> inFlight = new ArrayDeque<>();
+    private final int poolSize;
+    // a png writer per encoder thread, they are not thread safe but can be reused
+    private final ThreadLocal<ImageWriter> pngWriters = ThreadLocal.withInitial(() -> ImageIO.getImageWritersByFormatName("png").next());
+    private final int fps;
+    // game time at the last tick with a frame rate
+    private long nanos;
+    // the last frame written in --rgb mode, repeated for the frames that show nothing new
+    private byte[] lastRgb;
+    private TetrisSnapshot snapshot;
+    // frames since the last painted one that repeat it
+    private long held;
+    // frames up to the last painted one, including those it repeats
+    private long frames;
+    int painted;
+
+    private static class Frame {
+        final BufferedImage image;
+        final Graphics2D graphics;
+        final int[] pixels;
+        byte[] rgb;
+        long index;
+        long held;
+        Future<?> encoded;
+
+        Frame(int width, int height, boolean rgb) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(0, 0, width, height);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            this.rgb = rgb ? new byte[3 * width * height] : null;
+        }
+    }
+
+    // frames go to png files in directory, or as raw RGB to rgbOut when it is not null; one frame per tick without fps
+    public FrameExporter(int columns, int rows, int cellSize, int fps, int threads, Path directory, OutputStream rgbOut) {
+        this.fps = fps;
+        boardWidth = columns * (cellSize + 1) + 1;
+        boardHeight = rows * (cellSize + 1) + 1;
+        width = boardWidth + MARGIN + NEXT_SIZE + MARGIN;
+        height = Math.max(boardHeight, MARGIN + NEXT_SIZE + MARGIN);
+        this.directory = directory;
+        this.rgbOut = rgbOut;
+        renderer = new BoardRenderer(Tetris.COLORS, cellSize);
+        encoders = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "Tetris frame encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // enough for every worker to be busy with a frame while as many more are painted
+        poolSize = 2 * threads + 1;
+        if (rgbOut != null) {
+            lastRgb = new byte[3 * width * height];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean rgb = false;
+        int fps = 0;
+        int cellSize = 20;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--rgb")) {
+                rgb = true;
+            } else if (arg.startsWith("--fps=")) {
+                fps = Integer.parseInt(arg.substring("--fps=".length()));
+            } else if (arg.startsWith("--cell=")) {
+                cellSize = Integer.parseInt(arg.substring("--cell=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.isEmpty()) {
+            System.err.println("Usage: FrameExporter [--rgb] [--fps=0] [--cell=20] [--threads=N] replay.ttr [directory]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        ImageIO.setUseCache(false);
+        Path replay = Paths.get(positional.get(0));
+        Path directory = Paths.get(positional.size() > 1 ? positional.get(1) : "frames");
+        if (!rgb) {
+            Files.createDirectories(directory);
+        }
+        OutputStream out = rgb ? new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16) : null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(replay));
+        int[] board = Replay.boardSize(buffer);
+        if (board == null) {
+            System.err.println(replay + " is not a replay or its board cannot be played");
+            System.exit(1);
+        }
+        FrameExporter exporter = new FrameExporter(board[0], board[1], cellSize, fps, threads, directory, out);
+        System.err.println("Frames are " + exporter.width + "x" + exporter.height);
+        long start = System.nanoTime();
+        boolean verified;
+        try {
+            verified = Replay.play(buffer, exporter::frame);
+        } finally {
+            exporter.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d frames, %d of them painted, in %.2f s: %.0f frames/s, %.0f painted/s%s%n", exporter.frames,
+                exporter.painted, seconds, exporter.frames / seconds, exporter.painted / seconds,
+                verified ? "" : ", the replay does not verify");
+    }
+
+    // from the thread playing the game, after every tick
+    public void frame(TetrisEngine engine) {
+        long count = 1;
+        if (fps > 0) {
+            long end = nanos + GameClock.gravityNanos(engine.model.level);
+            count = firstFrameFrom(end) - firstFrameFrom(nanos);
+            nanos = end;
+        }
+        if (count == 0) {
+            // gone before the next frame
+            return;
+        }
+        if (snapshot != null && snapshot.changes == engine.model.changes) {
+            held += count;
+            return;
+        }
+        snapshot = TetrisSnapshot.of(engine.model, snapshot);
+        Frame frame = acquire();
+        frame.held = held;
+        frame.index = frames + held;
+        frames += held + 1;
+        held = count - 1;
+        renderer.paint(frame.graphics, snapshot, null, boardWidth, boardHeight);
+        frame.graphics.translate(boardWidth + MARGIN, MARGIN);
+        NextPanel.paintNext(frame.graphics, snapshot, Tetris.COLORS, NEXT_SIZE, NEXT_SIZE);
+        frame.graphics.translate(-boardWidth - MARGIN, -MARGIN);
+        frame.encoded = encoders.submit(() -> encode(frame));
+        inFlight.add(frame);
+        painted++;
+    }
+
+    // index of the first frame that starts at or after the game time
+    private long firstFrameFrom(long gameNanos) {
+        return (gameNanos * fps + 999_999_999) / 1_000_000_000;
+    }
+
+    private Frame acquire() {
+        if (inFlight.size() < poolSize) {
+            return new Frame(width, height, rgbOut != null);
+        }
+        return finish(inFlight.poll());
+    }
+
+    // waits for the oldest frame and writes it out in order, returns it for reuse
+    private Frame finish(Frame frame) {
+        try {
+            frame.encoded.get();
+            if (rgbOut != null) {
+                for (long i = 0; i < frame.held; i++) {
+                    rgbOut.write(lastRgb);
+                }
+                rgbOut.write(frame.rgb);
+                // the frame just written is the one to repeat next, its buffer and the old one swap places
+                byte[] swapped = lastRgb;
+                lastRgb = frame.rgb;
+                frame.rgb = swapped;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Encoding frame " + frame.index + " failed", e.getCause());
+        }
+        return frame;
+    }
+
+    private void encode(Frame frame) {
+        if (rgbOut != null) {
+            int[] pixels = frame.pixels;
+            byte[] rgb = frame.rgb;
+            for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+                int pixel = pixels[i];
+                rgb[j] = (byte) (pixel >> 16);
+                rgb[j + 1] = (byte) (pixel >> 8);
+                rgb[j + 2] = (byte) pixel;
+            }
+        } else {
+            ImageWriter writer = pngWriters.get();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            // quality 0.9 is deflate level 1, which packs the flat colors of a frame as small as the default level
+            // in two thirds of the time
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.9f);
+            try (ImageOutputStream out = new FileImageOutputStream(directory.resolve(String.format("%08d.png", frame.index)).toFile())) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(frame.image, null, null), param);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // writes out the frames still being encoded
+    @Override
+    public void close() throws IOException {
+        try {
+            Frame frame;
+            while ((frame = inFlight.poll()) != null) {
+                finish(frame);
+                frame.graphics.dispose();
+            }
+            if (rgbOut != null) {
+                for (long i = 0; i < held; i++) {
+                    rgbOut.write(lastRgb);
+                }
+                rgbOut.flush();
+            }
+            frames += held;
+            held = 0;
+        } finally {
+            encoders.shutdown();
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+import com.github.antonsher.tetris.TetrisModel.State;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The state of many games in one off-heap arena, stepped in lockstep for training and large experiments.
+ * <p>
+ * The arena is a single direct buffer laid out as a struct of arrays, one array per field with an element per game:
+ * the bit rows of the boards, the four cells of the tetras, the next tetras, the stats and the piece generators.
+ * Games follow the rules of {@link TetrisEngine} with the {@link BagGenerator}, so a game started with the same seed
+ * and given the same inputs plays out exactly like one on a {@link TetrisModel}. Boards only keep which cells are
+ * occupied, not their colors.
+ * <p>
+ * {@link #step} gives every game one input and one tick, splitting the games among worker threads. A lost game
+ * starts over right away with a new seed. Stepping allocates nothing.
+ */
+public class GameArena implements Closeable {
+    // the same seed sequence as SplittableRandom, whose state the arena keeps for every game
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    static final Input[] INPUTS = Input.values();
+    // per game in observe(): kind of the tetra, then its cells as x, y, then the next tetra's orientation
+    public static final int PIECE_FIELDS = 10;
+
+    public final int games;
+    public final int width;
+    public final int height;
+    private final long fullRow;
+
+    // the rules, with the TETRAS table flattened and moved to where tetras spawn
+    private final int[] spawnX;
+    private final int[] spawnY;
+    private final int[] kinds;
+    private final int[] lineScores;
+    private final int linesPerLevel;
+
+    final ByteBuffer arena;
+    private final LongBuffer rows;
+    private final LongBuffer randoms;
+    private final LongBuffer seeds;
+    private final IntBuffer tetraX;
+    private final IntBuffer tetraY;
+    private final IntBuffer tetraKinds;
+    private final IntBuffer nexts;
+    private final IntBuffer scores;
+    private final IntBuffer lines;
+    private final IntBuffer levels;
+    private final IntBuffer tillNext;
+    private final IntBuffer stackHeights;
+    private final IntBuffer pieces;
+    private final ByteBuffer states;
+    // seven kinds then how many of them were dealt
+    private final ByteBuffer bags;
+
+    // the workers step the games from bounds[w] to bounds[w + 1], the calling thread the first part
+    private final Thread[] workers;
+    private final int[] bounds;
+    // a rotated tetra for every part
+    private final int[][] scratch;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile int generation;
+    private volatile boolean closed;
+    private volatile Thread caller;
+    // the first exception a worker ran into during the current step
+    private volatile Throwable failure;
+    private byte[] stepActions;
+    private int[] stepRewards;
+    private byte[] stepDone;
+
+    public GameArena(int games, int width, int height, long seed, int threads) {
+        TetrisModel rules = new TetrisModel(width, height);
+        this.games = games;
+        this.width = width;
+        this.height = height;
+        fullRow = rules.FULL_ROW;
+        int orientations = rules.TETRAS.length;
+        spawnX = new int[4 * orientations];
+        spawnY = new int[4 * orientations];
+        kinds = new int[orientations];
+        for (int o = 0; o < orientations; o++) {
+            for (int i = 0; i < 4; i++) {
+                spawnX[4 * o + i] = rules.TETRAS[o][i][0] + rules.SPAWN_DX;
+                spawnY[4 * o + i] = rules.TETRAS[o][i][1] + rules.SPAWN_DY;
+            }
+            kinds[o] = rules.TETRAS[o][4][0];
+        }
+        lineScores = rules.SCORES.clone();
+        linesPerLevel = rules.LINES_PER_LEVEL;
+
+        long size = 8L * games * (height + 2) + 4L * games * (4 + 4 + 8) + games + 8L * games;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("An arena of " + games + " games of " + width + "x" + height + " would take " + size + " bytes");
+        }
+        arena = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+        int offset = 0;
+        rows = longs(offset, games * height);
+        offset += 8 * games * height;
+        randoms = longs(offset, games);
+        offset += 8 * games;
+        seeds = longs(offset, games);
+        offset += 8 * games;
+        tetraX = ints(offset, 4 * games);
+        offset += 16 * games;
+        tetraY = ints(offset, 4 * games);
+        offset += 16 * games;
+        tetraKinds = ints(offset, games);
+        offset += 4 * games;
+        nexts = ints(offset, games);
+        offset += 4 * games;
+        scores = ints(offset, games);
+        offset += 4 * games;
+        lines = ints(offset, games);
+        offset += 4 * games;
+        levels = ints(offset, games);
+        offset += 4 * games;
+        tillNext = ints(offset, games);
+        offset += 4 * games;
+        stackHeights = ints(offset, games);
+        offset += 4 * games;
+        pieces = ints(offset, games);
+        offset += 4 * games;
+        bags = arena.slice(offset, 8 * games);
+        offset += 8 * games;
+        states = arena.slice(offset, games);
+
+        long gameSeed = seed;
+        for (int g = 0; g < games; g++) {
+            gameSeed = mix64(gameSeed + GOLDEN_GAMMA);
+            start(g, gameSeed);
+        }
+
+        int parts = Math.max(1, Math.min(threads, games));
+        bounds = new int[parts + 1];
+        for (int p = 0; p <= parts; p++) {
+            bounds[p] = (int) ((long) games * p / parts);
+        }
+        scratch = new int[parts][8];
+        workers = new Thread[parts - 1];
+        for (int w = 0; w < workers.length; w++) {
+            int part = w + 1;
+            workers[w] = new Thread(() -> work(part), "Tetris arena " + part);
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+    }
+
+    public GameArena(int games, long seed) {
+        this(games, 10, 20, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    private LongBuffer longs(int offset, int count) {
+        return arena.slice(offset, 8 * count).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private IntBuffer ints(int offset, int count) {
+        return arena.slice(offset, 4 * count).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    // gives every game actions[g], an Input ordinal, and a tick; rewards[g] gets the points scored and done[g] is 1
+    // when the game was lost and started over
+    public void step(byte[] actions, int[] rewards, byte[] done) {
+        if (actions.length < games || rewards.length < games || done.length < games) {
+            throw new IllegalArgumentException("Need an action, a reward and a done flag for each of the " + games + " games");
+        }
+        // checked up front, a worker that fails half way leaves its games stepped and the others not
+        for (int g = 0; g < games; g++) {
+            if (actions[g] < 0 || actions[g] >= INPUTS.length) {
+                throw new IllegalArgumentException("Action " + actions[g] + " of game " + g + " is not an Input ordinal");
+            }
+        }
+        stepActions = actions;
+        stepRewards = rewards;
+        stepDone = done;
+        caller = Thread.currentThread();
+        failure = null;
+        running.set(workers.length);
+        // the volatile write hands the arrays above to the workers
+        generation++;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            step(bounds[0], bounds[1], scratch[0]);
+        } finally {
+            // the workers write into the caller's arrays until they are done, even when our part failed
+            while (running.get() != 0) {
+                LockSupport.park(this);
+            }
+        }
+        Throwable failed = failure;
+        if (failed != null) {
+            throw new IllegalStateException("Stepping the games failed", failed);
+        }
+    }
+
+    private void work(int part) {
+        int seen = 0;
+        while (true) {
+            while (generation == seen && !closed) {
+                LockSupport.park(this);
+            }
+            if (closed) {
+                return;
+            }
+            seen = generation;
+            try {
+                step(bounds[part], bounds[part + 1], scratch[part]);
+            } catch (Throwable e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+
+    private void step(int from, int to, int[] rotated) {
+        byte[] actions = stepActions;
+        int[] rewards = stepRewards;
+        byte[] done = stepDone;
+        for (int g = from; g < to; g++) {
+            int score = scores.get(g);
+            input(g, INPUTS[actions[g]], rotated);
+            tick(g);
+            rewards[g] = scores.get(g) - score;
+            if (states.get(g) == State.LOST.ordinal()) {
+                done[g] = 1;
+                long seed = mix64(seeds.get(g) + GOLDEN_GAMMA);
+                start(g, seed);
+            } else {
+                done[g] = 0;
+            }
+        }
+    }
+
+    // copies the boards, rows[g * height + y] with bit x set for an occupied cell, and the tetras, PIECE_FIELDS a game
+    public void observe(long[] boards, int[] tetras) {
+        rows.get(0, boards, 0, games * height);
+        for (int g = 0; g < games; g++) {
+            int base = PIECE_FIELDS * g;
+            tetras[base] = tetraKinds.get(g);
+            for (int i = 0; i < 4; i++) {
+                tetras[base + 1 + 2 * i] = tetraX.get(4 * g + i);
+                tetras[base + 2 + 2 * i] = tetraY.get(4 * g + i);
+            }
+            tetras[base + 9] = nexts.get(g);
+        }
+    }
+
+    public long getRow(int game, int y) {
+        return rows.get(game * height + y);
+    }
+
+    public int getTetraX(int game, int i) {
+        return tetraX.get(4 * game + i);
+    }
+
+    public int getTetraY(int game, int i) {
+        return tetraY.get(4 * game + i);
+    }
+
+    public int getScore(int game) {
+        return scores.get(game);
+    }
+
+    public int getLines(int game) {
+        return lines.get(game);
+    }
+
+    public int getLevel(int game) {
+        return levels.get(game);
+    }
+
+    public int getPieces(int game) {
+        return pieces.get(game);
+    }
+
+    public int getStackHeight(int game) {
+        return stackHeights.get(game);
+    }
+
+    public long getSeed(int game) {
+        return seeds.get(game);
+    }
+
+    // as TetrisEngine.start
+    public void start(int g, long seed) {
+        seeds.put(g, seed);
+        randoms.put(g, seed);
+        bags.put(8 * g + 7, (byte) PieceGenerator.KINDS);
+        int base = g * height;
+        for (int y = 0; y < height; y++) {
+            rows.put(base + y, 0);
+        }
+        stackHeights.put(g, 0);
+        scores.put(g, 0);
+        lines.put(g, 0);
+        levels.put(g, 0);
+        tillNext.put(g, linesPerLevel);
+        pieces.put(g, 0);
+        nexts.put(g, nextPiece(g));
+        placeNext(g);
+    }
+
+    private void input(int g, Input input, int[] rotated) {
+        if (states.get(g) != State.LET_USER_MOVE.ordinal()) {
+            return;
+        }
+        switch (input) {
+            case LEFT:
+                if (fits(g, -1, 0)) {
+                    shift(g, -1, 0);
+                }
+                break;
+            case RIGHT:
+                if (fits(g, 1, 0)) {
+                    shift(g, 1, 0);
+                }
+                break;
+            case ROTATE:
+                rotate(g, rotated);
+                break;
+            case DOWN:
+                if (fits(g, 0, -1)) {
+                    shift(g, 0, -1);
+                }
+                break;
+            case DROP:
+                // nothing above the stack can stop the tetra
+                int bottom = Math.min(Math.min(tetraY.get(4 * g), tetraY.get(4 * g + 1)), Math.min(tetraY.get(4 * g + 2), tetraY.get(4 * g + 3)));
+                int fall = Math.max(0, bottom - stackHeights.get(g));
+                while (fits(g, 0, -fall - 1)) {
+                    fall++;
+                }
+                shift(g, 0, -fall);
+                break;
+        }
+    }
+
+    private void tick(int g) {
+        if (states.get(g) != State.LET_USER_MOVE.ordinal()) {
+            return;
+        }
+        if (fits(g, 0, -1)) {
+            shift(g, 0, -1);
+        } else {
+            freezeAndClearFullLines(g);
+            placeNext(g);
+        }
+    }
+
+    private void placeNext(int g) {
+        int next = nexts.get(g);
+        int base = g * height;
+        for (int i = 0; i < 4; i++) {
+            int x = spawnX[4 * next + i];
+            int y = spawnY[4 * next + i];
+            if ((rows.get(base + y) & 1L << x) != 0) {
+                // the spawned tetra overlaps the stack: it is frozen where it is and the game is lost
+                for (int j = 0; j < 4; j++) {
+                    occupy(g, spawnX[4 * next + j], spawnY[4 * next + j]);
+                }
+                states.put(g, (byte) State.LOST.ordinal());
+                return;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            tetraX.put(4 * g + i, spawnX[4 * next + i]);
+            tetraY.put(4 * g + i, spawnY[4 * next + i]);
+        }
+        tetraKinds.put(g, kinds[next]);
+        nexts.put(g, nextPiece(g));
+        pieces.put(g, pieces.get(g) + 1);
+        states.put(g, (byte) State.LET_USER_MOVE.ordinal());
+    }
+
+    // whether the tetra moved by dx, dy stays on the board without overlapping the stack
+    private boolean fits(int g, int dx, int dy) {
+        int base = g * height;
+        for (int i = 0; i < 4; i++) {
+            int x = tetraX.get(4 * g + i) + dx;
+            int y = tetraY.get(4 * g + i) + dy;
+            if (x < 0 || x >= width || y < 0 || y >= height || (rows.get(base + y) & 1L << x) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void shift(int g, int dx, int dy) {
+        for (int i = 0; i < 4; i++) {
+            tetraX.put(4 * g + i, tetraX.get(4 * g + i) + dx);
+            tetraY.put(4 * g + i, tetraY.get(4 * g + i) + dy);
+        }
+    }
+
+    // as TetrisModel.rotate, around the middle of the tetra's bounding box
+    private void rotate(int g, int[] rotated) {
+        int xMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int yMin = Integer.MAX_VALUE;
+        int yMax = Integer.MIN_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int x = tetraX.get(4 * g + i);
+            int y = tetraY.get(4 * g + i);
+            xMin = Math.min(xMin, x);
+            xMax = Math.max(xMax, x);
+            yMin = Math.min(yMin, y);
+            yMax = Math.max(yMax, y);
+        }
+        int xCenter = (xMin + xMax + 1) / 2;
+        int yCenter = (yMin + yMax) / 2;
+        int base = g * height;
+        for (int i = 0; i < 4; i++) {
+            int x = xCenter + yCenter - tetraY.get(4 * g + i);
+            int y = yCenter + tetraX.get(4 * g + i) - xCenter;
+            if (x < 0 || x >= width || y < 0 || y >= height || (rows.get(base + y) & 1L << x) != 0) {
+                return;
+            }
+            rotated[2 * i] = x;
+            rotated[2 * i + 1] = y;
+        }
+        for (int i = 0; i < 4; i++) {
+            tetraX.put(4 * g + i, rotated[2 * i]);
+            tetraY.put(4 * g + i, rotated[2 * i + 1]);
+        }
+    }
+
+    private void occupy(int g, int x, int y) {
+        rows.put(g * height + y, rows.get(g * height + y) | 1L << x);
+        if (y >= stackHeights.get(g)) {
+            stackHeights.put(g, y + 1);
+        }
+    }
+
+    // as TetrisModel.freezeAndClearFullLines
+    private void freezeAndClearFullLines(int g) {
+        int bottom = Integer.MAX_VALUE;
+        int top = Integer.MIN_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int y = tetraY.get(4 * g + i);
+            occupy(g, tetraX.get(4 * g + i), y);
+            bottom = Math.min(bottom, y);
+            top = Math.max(top, y);
+        }
+        int base = g * height;
+        int stackHeight = stackHeights.get(g);
+        int to = bottom;
+        for (int from = bottom; from < stackHeight; from++) {
+            long row = rows.get(base + from);
+            if (from <= top && row == fullRow) {
+                continue;
+            }
+            rows.put(base + to++, row);
+        }
+        int atOnce = stackHeight - to;
+        if (atOnce == 0) {
+            return;
+        }
+        for (int y = to; y < stackHeight; y++) {
+            rows.put(base + y, 0);
+        }
+        stackHeights.put(g, to);
+
+        int level = levels.get(g);
+        lines.put(g, lines.get(g) + atOnce);
+        scores.put(g, scores.get(g) + lineScores[atOnce - 1] * (level + 1));
+        int left = tillNext.get(g) - atOnce;
+        if (left <= 0) {
+            left += linesPerLevel;
+            levels.put(g, level + 1);
+        }
+        tillNext.put(g, left);
+    }
+
+    // as BagGenerator.fill, one piece at a time
+    private int nextPiece(int g) {
+        int bag = 8 * g;
+        int dealt = bags.get(bag + 7);
+        if (dealt == PieceGenerator.KINDS) {
+            for (int i = 0; i < PieceGenerator.KINDS; i++) {
+                int j = nextInt(g, i + 1);
+                bags.put(bag + i, bags.get(bag + j));
+                bags.put(bag + j, (byte) (i + 1));
+            }
+            dealt = 0;
+        }
+        int kind = bags.get(bag + dealt);
+        bags.put(bag + 7, (byte) (dealt + 1));
+        int count = PieceGenerator.ORIENTATION_COUNT[kind];
+        return PieceGenerator.FIRST_ORIENTATION[kind] + (count == 1 ? 0 : nextInt(g, count));
+    }
+
+    // SplittableRandom.nextInt(bound) on the state of game g
+    private int nextInt(int g, int bound) {
+        int r = nextInt(g);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt(g) >>> 1) {
+            // rejected, the last values of the int range would make some results more likely
+        }
+        return r;
+    }
+
+    private int nextInt(int g) {
+        long seed = randoms.get(g) + GOLDEN_GAMMA;
+        randoms.put(g, seed);
+        long z = (seed ^ (seed >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
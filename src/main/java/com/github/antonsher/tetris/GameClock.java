@@ -0,0 +1,231 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link TetrisEngine} in real time and is the only thread that touches its model: other threads
+ * {@link #submit} inputs through a lock-free queue and read the state from the published {@link #snapshot()}.
+ * <p>
+ * Gravity ticks are scheduled on absolute nanosecond deadlines,
+ * so they do not drift or get coarse at high levels, and a tetra resting on the stack gets at least
+ * {@link #LOCK_DELAY_NANOS} before it freezes. While paused or after game over the clock thread is parked
+ * and only wakes up when another thread pauses, resumes, drops or starts a new game.
+ */
+public class GameClock implements Runnable {
+    public interface Listener {
+        void started();
+
+        void ticked();
+
+        void moved();
+
+        void undone();
+    }
+
+    static final long LOCK_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final TetrisEngine engine;
+    private Listener listener;
+    private final Queue<Input> inputs = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean newGameRequested = new AtomicBoolean();
+    private final AtomicBoolean undoRequested = new AtomicBoolean();
+    private volatile boolean paused;
+    private volatile Thread thread;
+
+    private volatile TetrisSnapshot snapshot;
+    private AutoPlayer autoPlayer;
+    private SpectatorStream spectators;
+    private Autosaver autosaver;
+
+    public GameClock(TetrisEngine engine) {
+        this.engine = engine;
+        snapshot = TetrisSnapshot.of(engine.model, null);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // lets the given player place every new tetra, must be set before the clock runs
+    public void setAutoPlayer(AutoPlayer autoPlayer) {
+        this.autoPlayer = autoPlayer;
+    }
+
+    // streams every published change of the game, must be set before the clock runs
+    public void setSpectators(SpectatorStream spectators) {
+        this.spectators = spectators;
+    }
+
+    // resumes the saved game instead of starting a new one and saves the game on every lock,
+    // must be set before the clock runs
+    public void setAutosaver(Autosaver autosaver) {
+        this.autosaver = autosaver;
+    }
+
+    public TetrisSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public static long gravityNanos(int level) {
+        return TimeUnit.SECONDS.toNanos(1) / (level + 1);
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        wakeUp();
+    }
+
+    // a drop also ticks right away instead of waiting for the gravity deadline
+    public void submit(Input input) {
+        inputs.offer(input);
+        wakeUp();
+    }
+
+    public void requestNewGame() {
+        newGameRequested.set(true);
+        wakeUp();
+    }
+
+    // takes back the last locked tetra if the engine keeps an undo history
+    public void requestUndo() {
+        undoRequested.set(true);
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        if (autosaver == null || !autosaver.resume(engine)) {
+            engine.start();
+        }
+        autoPlay();
+        publish();
+        listener.started();
+        long nextTick = System.nanoTime() + gravityNanos(engine.model.level);
+        boolean grounded = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (engine.isOver()) {
+                if (newGameRequested.getAndSet(false)) {
+                    inputs.clear();
+                    engine.start();
+                    autoPlay();
+                    publish();
+                    listener.started();
+                    nextTick = System.nanoTime() + gravityNanos(engine.model.level);
+                    grounded = false;
+                } else {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            if (paused) {
+                long remaining = nextTick - System.nanoTime();
+                while (paused) {
+                    LockSupport.park(this);
+                }
+                nextTick = System.nanoTime() + Math.max(0, remaining);
+                continue;
+            }
+
+            boolean requested = false;
+            boolean moved = false;
+            Input input;
+            while ((input = inputs.poll()) != null) {
+                moved |= engine.input(input);
+                requested |= input == Input.DROP;
+            }
+            if (moved && publish()) {
+                listener.moved();
+            }
+            if (undoRequested.getAndSet(false) && engine.undo()) {
+                autoPlay();
+                autosave();
+                publish();
+                listener.undone();
+                nextTick = System.nanoTime() + gravityNanos(engine.model.level);
+                grounded = false;
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (!requested && now < nextTick) {
+                LockSupport.parkNanos(this, nextTick - now);
+                continue;
+            }
+
+            long gravity = gravityNanos(engine.model.level);
+            if (!requested && !grounded && !engine.model.canMoveDown()) {
+                // the tetra has just come to rest, give the player the rest of the lock delay to slide it
+                grounded = true;
+                if (LOCK_DELAY_NANOS > gravity) {
+                    nextTick = now + LOCK_DELAY_NANOS - gravity;
+                    continue;
+                }
+            }
+            if (TetrisMetrics.ENABLED && !requested) {
+                TetrisMetrics.INSTANCE.gravityTicked(nextTick, now, engine.model.level);
+            }
+            engine.tick();
+            grounded = false;
+            if (engine.locked) {
+                autoPlay();
+                autosave();
+            }
+            publish();
+            listener.ticked();
+
+            gravity = gravityNanos(engine.model.level);
+            if (requested || engine.locked || now - nextTick > gravity) {
+                // a new tetra, or we fell behind: start a fresh gravity period instead of catching up
+                nextTick = now + gravity;
+            } else {
+                nextTick += gravity;
+            }
+        }
+    }
+
+    private void autoPlay() {
+        if (autoPlayer != null && !engine.isOver()) {
+            autoPlayer.play(engine);
+        }
+    }
+
+    private void autosave() {
+        if (autosaver == null) {
+            return;
+        }
+        if (engine.isOver()) {
+            autosaver.discard();
+        } else {
+            autosaver.save(engine);
+        }
+    }
+
+    private boolean publish() {
+        if (snapshot.changes == engine.model.changes) {
+            return false;
+        }
+        snapshot = TetrisSnapshot.of(engine.model, snapshot);
+        if (spectators != null) {
+            spectators.publish(engine.model);
+        }
+        return true;
+    }
+}
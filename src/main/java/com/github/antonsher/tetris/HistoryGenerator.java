@@ -0,0 +1,54 @@
+package com.github.antonsher.tetris;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws a kind uniformly, and draws again, up to {@link #ROLLS} times in total, while the kind is one of the last
+ * {@link #HISTORY_SIZE} pieces. The history starts filled with the z kinds, so the first piece is never one of them.
+ */
+public class HistoryGenerator implements PieceGenerator {
+    static final int HISTORY_SIZE = 4;
+    static final int ROLLS = 6;
+    static final int[] INITIAL_HISTORY = {6, 7, 6, 7};
+
+    private SplittableRandom random = new SplittableRandom();
+    private final int[] history = INITIAL_HISTORY.clone();
+    private int oldest;
+
+    @Override
+    public int id() {
+        return HISTORY;
+    }
+
+    @Override
+    public void reset(long seed) {
+        random = new SplittableRandom(seed);
+        System.arraycopy(INITIAL_HISTORY, 0, history, 0, HISTORY_SIZE);
+        oldest = 0;
+    }
+
+    @Override
+    public void fill(int[] pieces, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            int kind = 0;
+            for (int roll = 0; roll < ROLLS; roll++) {
+                kind = 1 + random.nextInt(KINDS);
+                if (!inHistory(kind)) {
+                    break;
+                }
+            }
+            history[oldest] = kind;
+            oldest = (oldest + 1) % HISTORY_SIZE;
+            pieces[i] = PieceGenerator.orientation(kind, random);
+        }
+    }
+
+    private boolean inHistory(int kind) {
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            if (history[i] == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.LatencyHistogram.LatencySummary;
+import com.github.antonsher.tetris.TetrisModel.State;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Opens many sessions to a {@link TetrisServer} and plays random games on them at a fixed command rate,
+ * then prints the throughput and the round trip latencies.
+ * <p>
+ * Usage: {@code LoadGenerator [--embedded] [host] [port] [sessions] [commandsPerSecond] [seconds]}
+ * <p>
+ * With {@code --embedded} the server is started in the same JVM on a free loopback port.
+ */
+public class LoadGenerator {
+    // one gravity tick for this many inputs
+    static final int INPUTS_PER_TICK = 4;
+
+    final String host;
+    final int port;
+    final int sessions;
+    final int commandsPerSecond;
+    final long durationNanos;
+
+    final LatencyHistogram roundTrips = new LatencyHistogram();
+    final LongAdder commands = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder games = new LongAdder();
+    final AtomicInteger connected = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+
+    public LoadGenerator(String host, int port, int sessions, int commandsPerSecond, long durationNanos) {
+        this.host = host;
+        this.port = port;
+        this.sessions = sessions;
+        this.commandsPerSecond = commandsPerSecond;
+        this.durationNanos = durationNanos;
+    }
+
+    public static void main(String[] arguments) throws Exception {
+        boolean embedded = false;
+        List<String> positional = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.equals("--embedded")) {
+                embedded = true;
+            } else {
+                positional.add(argument);
+            }
+        }
+        String[] args = positional.toArray(new String[0]);
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : TetrisServer.DEFAULT_PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int rate = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        TetrisServer server = null;
+        if (embedded) {
+            server = new TetrisServer(0, Integer.MAX_VALUE);
+            port = server.getPort();
+            TetrisServer embeddedServer = server;
+            Thread acceptor = new Thread(() -> {
+                try {
+                    embeddedServer.serve();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "Tetris server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        LoadGenerator generator = new LoadGenerator(host, port, sessions, rate, seconds * 1_000_000_000L);
+        generator.run();
+        generator.printSummary(seconds);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    public void run() throws InterruptedException {
+        long deadline = System.nanoTime() + durationNanos;
+        SplittableRandom seeds = new SplittableRandom(42);
+        List<Thread> clients = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            SplittableRandom random = seeds.split();
+            clients.add(SessionThreads.start("Tetris load " + i, () -> play(random, deadline)));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+    }
+
+    void play(SplittableRandom random, long deadline) {
+        long interval = 1_000_000_000L / commandsPerSecond;
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1024));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            byte[][] message = {new byte[256]};
+            DeltaDecoder decoder = new DeltaDecoder();
+            out.writeLong(random.nextLong());
+            out.flush();
+            receive(in, message, decoder);
+            connected.incrementAndGet();
+            games.increment();
+
+            // start at a random offset so the sessions do not send in lockstep
+            long next = System.nanoTime() + random.nextLong(interval);
+            int sent = 0;
+            while (next < deadline) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                long start = System.nanoTime();
+                if (decoder.getMirror().state == State.LOST) {
+                    out.write(TetrisServer.NEW_GAME);
+                    out.writeLong(random.nextLong());
+                    games.increment();
+                } else if (++sent % (INPUTS_PER_TICK + 1) == 0) {
+                    out.write(TetrisServer.TICK);
+                } else {
+                    out.write(1 + random.nextInt(TetrisServer.INPUTS.length - 1));
+                }
+                out.flush();
+                receive(in, message, decoder);
+                roundTrips.record(System.nanoTime() - start);
+                commands.increment();
+                next += interval;
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    // message holds a single buffer that grows with the largest message seen
+    void receive(DataInputStream in, byte[][] message, DeltaDecoder decoder) throws IOException {
+        int length = in.readShort() & 0xFFFF;
+        if (length > message[0].length) {
+            message[0] = new byte[length];
+        }
+        in.readFully(message[0], 0, length);
+        bytes.add(2 + length);
+        if (length > 0) {
+            decoder.decode(ByteBuffer.wrap(message[0], 0, length));
+        }
+    }
+
+    void printSummary(int seconds) {
+        LatencySummary summary = roundTrips.summarize();
+        System.out.println(String.format("%d of %d sessions connected, %d failed, %d games",
+                connected.get(), sessions, failed.get(), games.sum()));
+        System.out.println(String.format("%d commands, %d commands/s, %.1f bytes/command",
+                commands.sum(), commands.sum() / seconds, (double) bytes.sum() / Math.max(1, commands.sum())));
+        System.out.println(String.format("round trip us: mean %.1f p50 %d p90 %d p99 %d max %d",
+                summary.getMeanMicros(), summary.getP50Micros(), summary.getP90Micros(), summary.getP99Micros(), summary.getMaxMicros()));
+    }
+}
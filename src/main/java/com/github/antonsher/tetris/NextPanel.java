@@ -2,35 +2,77 @@ package com.github.antonsher.tetris;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import java.util.function.Supplier;
 
 import javax.swing.JPanel;
 
 public class NextPanel extends JPanel {
-    private final TetrisModel model;
+    private final Supplier<TetrisSnapshot> snapshots;
     private final Color[] COLORS;
+    // the next tetra as last drawn into image, coordinates then kind
+    private final int[] drawn = new int[9];
+    private BufferedImage image;
 
-    NextPanel(TetrisModel model, Color[] colors) {
-        this.model = model;
+    NextPanel(Supplier<TetrisSnapshot> snapshots, Color[] colors) {
+        this.snapshots = snapshots;
         COLORS = colors;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        TetrisSnapshot snapshot = snapshots.get();
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = getGraphicsConfiguration() != null
+                    ? getGraphicsConfiguration().createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            // no kind is -1, so the new image gets drawn
+            drawn[8] = -1;
+        }
+        if (!isDrawn(snapshot.next)) {
+            Graphics imageGraphics = image.createGraphics();
+            try {
+                paintNext(imageGraphics, snapshot, COLORS, width, height);
+            } finally {
+                imageGraphics.dispose();
+            }
+            for (int i = 0; i < 4; i++) {
+                drawn[2 * i] = snapshot.next[i][0];
+                drawn[2 * i + 1] = snapshot.next[i][1];
+            }
+            drawn[8] = snapshot.getTetraKind(snapshot.next);
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+
+    private boolean isDrawn(int[][] next) {
+        for (int i = 0; i < 4; i++) {
+            if (next[i][0] != drawn[2 * i] || next[i][1] != drawn[2 * i + 1]) {
+                return false;
+            }
+        }
+        return next[4][0] == drawn[8];
+    }
+
+    static void paintNext(Graphics g, TetrisSnapshot snapshot, Color[] colors, int width, int height) {
         g.setColor(Color.BLACK);
-        g.fillRect(0, 0, getWidth(), getHeight());
+        g.fillRect(0, 0, width, height);
         int minX = Integer.MAX_VALUE;
         int maxX = Integer.MIN_VALUE;
         int maxY = Integer.MIN_VALUE;
         for (int i = 0; i < 4; i++) {
-            minX = Math.min(model.getNextTetraX(i), minX);
-            maxX = Math.max(model.getNextTetraX(i), maxX);
-            maxY = Math.max(model.getNextTetraY(i), maxY);
+            minX = Math.min(snapshot.getNextTetraX(i), minX);
+            maxX = Math.max(snapshot.getNextTetraX(i), maxX);
+            maxY = Math.max(snapshot.getNextTetraY(i), maxY);
         }
-        g.setColor(COLORS[model.getTetraKind(model.next)]);
+        g.setColor(colors[snapshot.getTetraKind(snapshot.next)]);
         for (int i = 0; i < 4; i++) {
-            int x = model.getNextTetraX(i) - minX;
-            int y = maxY - model.getNextTetraY(i);
+            int x = snapshot.getNextTetraX(i) - minX;
+            int y = maxY - snapshot.getNextTetraY(i);
             if (maxX - minX < 2) {
                 x++;
             }
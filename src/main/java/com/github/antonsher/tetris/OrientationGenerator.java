@@ -0,0 +1,30 @@
+package com.github.antonsher.tetris;
+
+import java.util.Random;
+
+/**
+ * The original generator: uniform over all 19 orientations, so kinds with more orientations come more often.
+ * Kept so that replays recorded with it still play back identically.
+ */
+public class OrientationGenerator implements PieceGenerator {
+    static final int COUNT = 19;
+
+    private final Random random = new Random();
+
+    @Override
+    public int id() {
+        return ORIENTATIONS;
+    }
+
+    @Override
+    public void reset(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    public void fill(int[] pieces, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            pieces[i] = random.nextInt(COUNT);
+        }
+    }
+}
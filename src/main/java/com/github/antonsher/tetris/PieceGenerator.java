@@ -0,0 +1,59 @@
+package com.github.antonsher.tetris;
+
+import java.util.SplittableRandom;
+
+/**
+ * Produces the sequence of pieces of a game as indices into {@link TetrisModel#TETRAS}.
+ * The sequence is fully determined by the seed passed to {@link #reset(long)}, and every game owns its generator,
+ * so nothing is shared between games played on different threads.
+ */
+public interface PieceGenerator {
+    int ORIENTATIONS = 0;
+    int UNIFORM = 1;
+    int BAG = 2;
+    int HISTORY = 3;
+    String[] NAMES = {"orientations", "uniform", "bag", "history"};
+
+    // where the orientations of every kind start in TETRAS and how many there are, by kind
+    int[] FIRST_ORIENTATION = {-1, 0, 2, 3, 7, 11, 15, 17};
+    int[] ORIENTATION_COUNT = {0, 2, 1, 4, 4, 4, 2, 2};
+    int KINDS = 7;
+
+    // stored in replays to pick the same generator when playing them back
+    int id();
+
+    void reset(long seed);
+
+    // writes the next count pieces to pieces[offset] and on
+    void fill(int[] pieces, int offset, int count);
+
+    // the kind-based generators spawn a kind in any of its orientations with equal probability
+    static int orientation(int kind, SplittableRandom random) {
+        int count = ORIENTATION_COUNT[kind];
+        return FIRST_ORIENTATION[kind] + (count == 1 ? 0 : random.nextInt(count));
+    }
+
+    static PieceGenerator forId(int id) {
+        switch (id) {
+            case ORIENTATIONS:
+                return new OrientationGenerator();
+            case UNIFORM:
+                return new UniformGenerator();
+            case BAG:
+                return new BagGenerator();
+            case HISTORY:
+                return new HistoryGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown piece generator: " + id);
+        }
+    }
+
+    static PieceGenerator forName(String name) {
+        for (int id = 0; id < NAMES.length; id++) {
+            if (NAMES[id].equals(name)) {
+                return forId(id);
+            }
+        }
+        throw new IllegalArgumentException("Unknown piece generator: " + name + ", expected one of " + String.join(", ", NAMES));
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.antonsher.tetris;
+
+/**
+ * The upcoming pieces of a game, filled from a {@link PieceGenerator} a batch at a time into a ring buffer,
+ * so the generator runs in tight loops and the next {@link #PREVIEW} pieces can be looked at without drawing them.
+ */
+public class PieceQueue {
+    static final int BATCH = 64;
+    static final int PREVIEW = BATCH;
+
+    public final PieceGenerator generator;
+    // BATCH sized slots, every fill starts at a slot boundary so it never wraps around
+    private final int[] queue = new int[2 * BATCH];
+    private int head;
+    private int size;
+    // pieces drawn since the last reset, together with the seed this is where the generator stands
+    private long drawn;
+
+    public PieceQueue(PieceGenerator generator) {
+        this.generator = generator;
+    }
+
+    public void reset(long seed) {
+        generator.reset(seed);
+        head = 0;
+        size = 0;
+        drawn = 0;
+    }
+
+    public long drawn() {
+        return drawn;
+    }
+
+    // draws count pieces unseen, e.g. to pick a saved game up where it was after resetting to its seed
+    public void skip(long count) {
+        for (long i = 0; i < count; i++) {
+            next();
+        }
+    }
+
+    public int next() {
+        if (size == 0) {
+            refill();
+        }
+        int piece = queue[head];
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        drawn++;
+        return piece;
+    }
+
+    // the piece ahead draws after the next one, 0 being the next one
+    public int peek(int ahead) {
+        if (ahead >= PREVIEW) {
+            throw new IllegalArgumentException("Can only look " + PREVIEW + " pieces ahead: " + ahead);
+        }
+        while (size <= ahead) {
+            refill();
+        }
+        return queue[(head + ahead) & (queue.length - 1)];
+    }
+
+    private void refill() {
+        generator.fill(queue, (head + size) & (queue.length - 1), BATCH);
+        size += BATCH;
+    }
+}
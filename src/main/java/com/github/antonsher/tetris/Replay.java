@@ -0,0 +1,141 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Binary replay format written by {@link ReplayRecorder}:
+ * <pre>
+ * int   MAGIC
+ * byte  VERSION
+ * short board width, short board height (since version 2, version 1 replays are 10x20)
+ * byte  piece generator id (since version 3, older replays used the orientations generator)
+ * long  seed of the game
+ * var   (ticks since previous entry &lt;&lt; 3) | input ordinal, once per accepted input, or UNDO per undone tetra
+ * var   (ticks since previous entry &lt;&lt; 3) | END
+ * var   pieces, score, lines at the end of the recording
+ * </pre>
+ * where {@code var} is an unsigned LEB128 varint. Since a game is fully determined by its seed and inputs,
+ * playing the entries back on a fresh engine must reproduce the recorded end state.
+ */
+public class Replay {
+    static final int MAGIC = 0x54545250; // "TTRP"
+    static final byte VERSION = 3;
+    static final int UNDO = 6;
+    static final int END = 7;
+    static final Input[] INPUTS = Input.values();
+
+    public static boolean verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return verify(buffer);
+        } catch (BufferUnderflowException e) {
+            // truncated file
+            return false;
+        }
+    }
+
+    public static boolean verify(ByteBuffer buffer) {
+        return play(buffer, engine -> {
+        });
+    }
+
+    // plays the replay back like verify, showing the engine to ticked once it started and after every tick
+    public static boolean play(ByteBuffer buffer, Consumer<TetrisEngine> ticked) {
+        if (buffer.getInt() != MAGIC) {
+            return false;
+        }
+        byte version = buffer.get();
+        TetrisEngine engine;
+        if (version == 1) {
+            engine = new TetrisEngine(new TetrisModel());
+        } else if (version == 2 || version == 3) {
+            int width = buffer.getShort() & 0xFFFF;
+            int height = buffer.getShort() & 0xFFFF;
+            if (!TetrisModel.isValidBoard(width, height)) {
+                return false;
+            }
+            engine = new TetrisEngine(new TetrisModel(width, height));
+        } else {
+            return false;
+        }
+        int generator = version == 3 ? buffer.get() : PieceGenerator.ORIENTATIONS;
+        if (generator < 0 || generator >= PieceGenerator.NAMES.length) {
+            return false;
+        }
+        engine.model.pieceQueue = new PieceQueue(PieceGenerator.forId(generator));
+        engine.history = new UndoHistory(UndoHistory.DEFAULT_CAPACITY);
+        engine.start(buffer.getLong());
+        ticked.accept(engine);
+        long tick = 0;
+        while (true) {
+            long entry = readVarLong(buffer);
+            tick += entry >>> 3;
+            if (!tickUntil(engine, tick, ticked)) {
+                return false;
+            }
+            int input = (int) (entry & 7);
+            if (input == END) {
+                break;
+            }
+            if (input == UNDO) {
+                if (!engine.undo()) {
+                    return false;
+                }
+                continue;
+            }
+            if (input >= INPUTS.length || !engine.input(INPUTS[input])) {
+                return false;
+            }
+        }
+        return engine.pieces == readVarLong(buffer)
+                && engine.model.score == readVarLong(buffer)
+                && engine.model.lines == readVarLong(buffer);
+    }
+
+    // the board of a replay as {width, height}, read without moving the buffer; null when it is not a replay
+    // or its board cannot be played
+    static int[] boardSize(ByteBuffer buffer) {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < 4 + 1 + 2 + 2 || header.getInt() != MAGIC) {
+            return null;
+        }
+        if (header.get() == 1) {
+            return new int[]{10, 20};
+        }
+        int width = header.getShort() & 0xFFFF;
+        int height = header.getShort() & 0xFFFF;
+        return TetrisModel.isValidBoard(width, height) ? new int[]{width, height} : null;
+    }
+
+    private static boolean tickUntil(TetrisEngine engine, long tick, Consumer<TetrisEngine> ticked) {
+        while (engine.ticks < tick) {
+            if (engine.isOver()) {
+                return false;
+            }
+            engine.tick();
+            ticked.accept(engine);
+        }
+        return engine.ticks == tick;
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records the seed and the accepted inputs of a {@link TetrisEngine} game in the {@link Replay} format.
+ * The buffer is reused from game to game.
+ */
+public class ReplayRecorder {
+    static final String EXTENSION = ".ttr";
+
+    private byte[] buffer = new byte[256];
+    private int size;
+    private long lastTick;
+    private boolean finished;
+
+    void start(TetrisModel model, long seed) {
+        size = 0;
+        lastTick = 0;
+        finished = false;
+        writeInt(Replay.MAGIC);
+        write(Replay.VERSION);
+        writeShort(model.getBoardWidth());
+        writeShort(model.getBoardHeight());
+        write((byte) model.pieceQueue.generator.id());
+        writeLong(seed);
+    }
+
+    void input(long tick, Input input) {
+        writeEntry(tick, input.ordinal());
+    }
+
+    void undo(long tick) {
+        writeEntry(tick, Replay.UNDO);
+    }
+
+    public void finish(TetrisEngine engine) {
+        if (finished) {
+            return;
+        }
+        writeEntry(engine.ticks, Replay.END);
+        writeVarLong(engine.pieces);
+        writeVarLong(engine.model.score);
+        writeVarLong(engine.model.lines);
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // the recording so far, kept with a saved game so that the replay of the resumed game is still complete
+    void saveTo(ByteBuffer out) {
+        out.putLong(lastTick);
+        out.putInt(size);
+        out.put(buffer, 0, size);
+    }
+
+    int savedSize() {
+        return Long.BYTES + Integer.BYTES + size;
+    }
+
+    void resume(ByteBuffer in) {
+        lastTick = in.getLong();
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+        }
+        in.get(buffer, 0, length);
+        size = length;
+        finished = false;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, size);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private void writeEntry(long tick, int code) {
+        writeVarLong(((tick - lastTick) << 3) | code);
+        lastTick = tick;
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((byte) value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeInt(int value) {
+        write((byte) (value >>> 24));
+        write((byte) (value >>> 16));
+        write((byte) (value >>> 8));
+        write((byte) value);
+    }
+
+    private void writeShort(int value) {
+        write((byte) (value >>> 8));
+        write((byte) value);
+    }
+
+    private void write(byte b) {
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, size * 2);
+        }
+        buffer[size++] = b;
+    }
+}
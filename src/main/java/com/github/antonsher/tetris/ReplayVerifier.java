@@ -0,0 +1,51 @@
+package com.github.antonsher.tetris;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Plays back stored replays at full engine speed and checks that each one reproduces its recorded end state.
+ * <p>
+ * Usage: {@code ReplayVerifier [directory or .ttr files...]}
+ */
+public class ReplayVerifier {
+    public static void main(String[] args) throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[]{Tetris.REPLAYS_DIR.getPath()}) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> list = Files.list(path)) {
+                    files.addAll(list.filter(p -> p.toString().endsWith(ReplayRecorder.EXTENSION)).collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        files.parallelStream().forEach(file -> {
+            try {
+                if (!Replay.verify(file)) {
+                    failed.incrementAndGet();
+                    System.out.println("MISMATCH " + file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d replays verified in %.3f s, %d failed%n", files.size(), elapsed / 1e9, failed.get());
+        if (failed.get() > 0) {
+            System.exit(1);
+        }
+    }
+}
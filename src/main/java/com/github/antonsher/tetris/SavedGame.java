@@ -0,0 +1,231 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisModel.State;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of a game saved while it is played, written by {@link Autosaver}:
+ * <pre>
+ * int   MAGIC
+ * byte  VERSION
+ * short board width, short board height
+ * byte  piece generator id
+ * long  seed of the game
+ * long  pieces drawn from the piece queue
+ * long  ticks
+ * int   pieces, score, lines, level, tillNext
+ * byte  state
+ * byte  kind, then byte x and short y of every tile, of the tetra and then of the next tetra
+ * short stack height
+ * byte  the tiles of every row below the stack height, two 4 bit colors per byte
+ * long  tick of the last replay entry, int length of the replay so far, the replay; empty when not recorded
+ * int   CRC32 of everything before
+ * </pre>
+ * The piece generator does not give its random state away, so the seed and the number of pieces drawn stand for
+ * it: a resumed game resets the generator to the seed and draws that many pieces again.
+ */
+public class SavedGame {
+    static final int MAGIC = 0x54545356; // "TTSV"
+    static final byte VERSION = 1;
+    static final State[] STATES = State.values();
+    static final int TETRA_BYTES = 1 + 4 * 3;
+
+    public static int size(TetrisEngine engine) {
+        TetrisModel model = engine.model;
+        int replay = engine.recorder != null ? engine.recorder.savedSize() : Long.BYTES + Integer.BYTES;
+        return 4 + 1 + 2 + 2 + 1 + 8 + 8 + 8 + 5 * 4 + 1 + 2 * TETRA_BYTES + 2
+                + model.stackHeight * rowBytes(model) + replay + 4;
+    }
+
+    public static byte[] encode(TetrisEngine engine) {
+        ByteBuffer out = ByteBuffer.allocate(size(engine));
+        write(engine, out);
+        return out.array();
+    }
+
+    public static void write(TetrisEngine engine, ByteBuffer out) {
+        TetrisModel model = engine.model;
+        int start = out.position();
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.putShort((short) model.getBoardWidth());
+        out.putShort((short) model.getBoardHeight());
+        out.put((byte) model.pieceQueue.generator.id());
+        out.putLong(engine.seed);
+        out.putLong(model.pieceQueue.drawn());
+        out.putLong(engine.ticks);
+        out.putInt(engine.pieces);
+        out.putInt(model.score);
+        out.putInt(model.lines);
+        out.putInt(model.level);
+        out.putInt(model.tillNext);
+        out.put((byte) model.state.ordinal());
+        putTetra(out, model.tetra);
+        putTetra(out, model.next);
+        out.putShort((short) model.stackHeight);
+        int width = model.getBoardWidth();
+        for (int y = 0; y < model.stackHeight; y++) {
+            int[] colors = model.colors[y];
+            for (int x = 0; x < width; x += 2) {
+                out.put((byte) (colors[x] << 4 | (x + 1 < width ? colors[x + 1] : 0)));
+            }
+        }
+        if (engine.recorder != null) {
+            engine.recorder.saveTo(out);
+        } else {
+            out.putLong(0);
+            out.putInt(0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), out.arrayOffset() + start, out.position() - start);
+        out.putInt((int) crc.getValue());
+    }
+
+    // false when there is no saved game or it does not fit the engine, which then has to be started afresh
+    public static boolean restore(Path file, TetrisEngine engine) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // read rather than mapped, a mapped file cannot be replaced on every platform
+            in = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) {
+                    break;
+                }
+            }
+            in.flip();
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return restore(in, engine);
+    }
+
+    public static boolean restore(ByteBuffer in, TetrisEngine engine) {
+        if (in.remaining() < 4 + 1 + 4) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = in.duplicate();
+        checked.limit(in.limit() - 4);
+        crc.update(checked);
+        if (in.getInt(in.limit() - 4) != (int) crc.getValue() || in.getInt() != MAGIC || in.get() != VERSION) {
+            return false;
+        }
+        TetrisModel model = engine.model;
+        try {
+            if ((in.getShort() & 0xFFFF) != model.getBoardWidth() || (in.getShort() & 0xFFFF) != model.getBoardHeight()) {
+                return false;
+            }
+            int generator = in.get();
+            if (generator < 0 || generator >= PieceGenerator.NAMES.length) {
+                return false;
+            }
+            long seed = in.getLong();
+            long drawn = in.getLong();
+            long ticks = in.getLong();
+            int pieces = in.getInt();
+            int score = in.getInt();
+            int lines = in.getInt();
+            int level = in.getInt();
+            int tillNext = in.getInt();
+            int state = in.get();
+            if (state < 0 || state >= STATES.length || STATES[state] == State.LOST) {
+                return false;
+            }
+
+            // from here on the engine is overwritten, whatever fails next leaves it to be started afresh
+            if (model.pieceQueue.generator.id() != generator) {
+                model.pieceQueue = new PieceQueue(PieceGenerator.forId(generator));
+            }
+            model.pieceQueue.reset(seed);
+            model.pieceQueue.skip(drawn);
+            model.reset();
+            if (!getTetra(in, model, model.tetra) || !getTetra(in, model, model.next)) {
+                return false;
+            }
+            int stackHeight = in.getShort() & 0xFFFF;
+            if (stackHeight > model.getBoardHeight()) {
+                return false;
+            }
+            int width = model.getBoardWidth();
+            for (int y = 0; y < stackHeight; y++) {
+                for (int x = 0; x < width; x += 2) {
+                    int packed = in.get();
+                    if (!putTile(model, x, y, (packed >> 4) & 0xF) || (x + 1 < width && !putTile(model, x + 1, y, packed & 0xF))) {
+                        return false;
+                    }
+                }
+            }
+            model.score = score;
+            model.lines = lines;
+            model.level = level;
+            model.tillNext = tillNext;
+            model.state = STATES[state];
+            engine.seed = seed;
+            engine.ticks = ticks;
+            engine.pieces = pieces;
+            engine.locked = false;
+            if (engine.recorder != null) {
+                if (in.getInt(in.position() + Long.BYTES) == 0) {
+                    // saved without its replay, a recording that starts here would not play back
+                    return false;
+                }
+                engine.recorder.resume(in);
+            }
+            if (engine.history != null) {
+                // undo goes back no further than the resumed tetra
+                engine.history.clear();
+                engine.history.push(engine);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // truncated record
+            return false;
+        }
+        return true;
+    }
+
+    private static int rowBytes(TetrisModel model) {
+        return (model.getBoardWidth() + 1) / 2;
+    }
+
+    private static void putTetra(ByteBuffer out, int[][] tetra) {
+        out.put((byte) tetra[4][0]);
+        for (int i = 0; i < 4; i++) {
+            out.put((byte) tetra[i][0]);
+            out.putShort((short) tetra[i][1]);
+        }
+    }
+
+    private static boolean getTetra(ByteBuffer in, TetrisModel model, int[][] tetra) {
+        int kind = in.get();
+        if (kind < 1 || kind > PieceGenerator.KINDS) {
+            return false;
+        }
+        model.setTetraKind(tetra, kind);
+        for (int i = 0; i < 4; i++) {
+            tetra[i][0] = in.get();
+            tetra[i][1] = in.getShort() & 0xFFFF;
+            if (model.isOutsideTheBoard(tetra[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean putTile(TetrisModel model, int x, int y, int color) {
+        if (color > PieceGenerator.KINDS) {
+            return false;
+        }
+        if (color > 0) {
+            model.setBoardTile(x, y, color);
+        }
+        return true;
+    }
+}
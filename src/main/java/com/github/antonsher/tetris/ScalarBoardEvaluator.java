@@ -0,0 +1,41 @@
+package com.github.antonsher.tetris;
+
+/**
+ * Evaluates one board after another, a row at a time, with the same bit tricks as {@link VectorBoardEvaluator}.
+ */
+public class ScalarBoardEvaluator implements BoardEvaluator {
+    @Override
+    public void evaluate(BoardBatch batch) {
+        long fullRow = batch.fullRow;
+        long rightWall = 1L << (batch.width - 1);
+        long inner = fullRow >>> 1;
+        for (int b = 0; b < batch.size; b++) {
+            int top = batch.tops[b];
+            long covered = 0;
+            int aggregateHeight = 0;
+            int maxHeight = 0;
+            int holes = 0;
+            int bumpiness = 0;
+            int transitions = 2 * (batch.height - top);
+            for (int y = top - 1; y >= 0; y--) {
+                long row = batch.rows[y * batch.capacity + b];
+                if (maxHeight == 0 && row != 0) {
+                    maxHeight = y + 1;
+                }
+                covered |= row;
+                // a column is as high as the number of rows at which it is already covered
+                aggregateHeight += Long.bitCount(covered);
+                holes += Long.bitCount(covered & ~row);
+                // neighbouring columns of different heights differ in coverage at exactly that many rows
+                bumpiness += Long.bitCount((covered ^ covered >>> 1) & inner);
+                transitions += Long.bitCount((row ^ (row >>> 1 | rightWall)) & fullRow) + (int) (~row & 1);
+            }
+            batch.aggregateHeight[b] = aggregateHeight;
+            batch.maxHeight[b] = maxHeight;
+            batch.holes[b] = holes;
+            batch.bumpiness[b] = bumpiness;
+            batch.rowTransitions[b] = transitions;
+        }
+        batch.score(0, batch.size);
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.antonsher.tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * High scores kept as an append-only journal of {@code score;name} lines, the same format the game always used.
+ * <p>
+ * In memory only the best {@link #CAPACITY} entries are kept, in a min-heap of primitive scores, so adding
+ * an entry is O(log CAPACITY) however long the journal is. Every write appends one line under an exclusive
+ * {@link FileLock} on a sibling lock file, after catching up with lines other instances appended meanwhile.
+ * Once the journal grows past {@link #COMPACT_THRESHOLD} bytes it is rewritten to a temporary file holding just
+ * the heap and atomically renamed over the journal, so a crash leaves either the old or the new file.
+ */
+public class ScoreStore {
+    static final int CAPACITY = 10;
+    static final long COMPACT_THRESHOLD = 64 * 1024;
+
+    private final Path file;
+    private final Path lockFile;
+
+    // min-heap on scores, heapNames[i] belongs to heapScores[i]
+    private final int[] heapScores = new int[CAPACITY];
+    private final String[] heapNames = new String[CAPACITY];
+    private int size;
+
+    // best first, rebuilt from the heap after every change
+    private int[] rankedScores = new int[0];
+    private String[] rankedNames = new String[0];
+
+    // how far the journal has been read, and which file that offset belongs to
+    private long readOffset;
+    private Object fileKey;
+
+    public ScoreStore(Path file) {
+        this.file = file;
+        lockFile = file.resolveSibling(file.getFileName() + ".lock");
+    }
+
+    public synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            catchUp(channel);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        rank();
+    }
+
+    // the store stays empty until the returned future completes
+    public CompletableFuture<ScoreStore> loadAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            load();
+            return this;
+        }, executor);
+    }
+
+    public synchronized boolean qualifies(int score) {
+        return score > 0 && (size < CAPACITY || heapScores[0] < score);
+    }
+
+    public synchronized void add(int score, String playerName) {
+        String name = playerName == null ? "" : playerName.replace('\n', ' ').replace('\r', ' ');
+        try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // held until the channel is closed
+            lockChannel.lock();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                catchUp(channel);
+                String line = score + ";" + name + "\n";
+                if (readOffset < channel.size()) {
+                    // the journal ends with a line torn by a crash, keep ours separate from it
+                    line = "\n" + line;
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                long position = channel.size();
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+                channel.force(false);
+                readOffset = position;
+                offer(score, name);
+                if (position > COMPACT_THRESHOLD) {
+                    compact();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            offer(score, name);
+        }
+        rank();
+    }
+
+    public synchronized int size() {
+        return rankedScores.length;
+    }
+
+    // rank 0 is the best score
+    public synchronized int score(int rank) {
+        return rankedScores[rank];
+    }
+
+    public synchronized String name(int rank) {
+        return rankedNames[rank];
+    }
+
+    private void catchUp(FileChannel channel) throws IOException {
+        Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        if (channel.size() < readOffset || (key != null && !Objects.equals(key, fileKey))) {
+            // another instance compacted the journal, everything we had is in the new file
+            size = 0;
+            readOffset = 0;
+        }
+        fileKey = key;
+        long remaining = channel.size() - readOffset;
+        if (remaining <= 0) {
+            return;
+        }
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, readOffset, remaining);
+        int lineStart = 0;
+        for (int i = 0; i < remaining; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        readOffset += lineStart;
+    }
+
+    private void parseLine(ByteBuffer buffer, int start, int end) {
+        int score = 0;
+        int i = start;
+        while (i < end && i - start < 9 && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            score = score * 10 + buffer.get(i) - '0';
+            i++;
+        }
+        if (i == start || i == end || buffer.get(i) != ';') {
+            return;
+        }
+        i++;
+        int length = end - i;
+        if (length > 0 && buffer.get(end - 1) == '\r') {
+            length--;
+        }
+        if (size == CAPACITY && heapScores[0] >= score) {
+            return;
+        }
+        byte[] name = new byte[length];
+        for (int j = 0; j < length; j++) {
+            name[j] = buffer.get(i + j);
+        }
+        offer(score, new String(name, StandardCharsets.UTF_8));
+    }
+
+    private void offer(int score, String name) {
+        if (size < CAPACITY) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heapScores[parent] <= score) {
+                    break;
+                }
+                heapScores[i] = heapScores[parent];
+                heapNames[i] = heapNames[parent];
+                i = parent;
+            }
+            heapScores[i] = score;
+            heapNames[i] = name;
+        } else if (heapScores[0] < score) {
+            siftDown(heapScores, heapNames, size, score, name);
+        }
+    }
+
+    // puts the entry in place of the smallest one at the root of the heap
+    private static void siftDown(int[] scores, String[] names, int size, int score, String name) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (scores[child] >= score) {
+                break;
+            }
+            scores[i] = scores[child];
+            names[i] = names[child];
+            i = child;
+        }
+        scores[i] = score;
+        names[i] = name;
+    }
+
+    private void compact() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            content.append(heapScores[i]).append(';').append(heapNames[i]).append('\n');
+        }
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        if (Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            // a temp file is private to its owner, the journal keeps the permissions it is shared with
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(file));
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        readOffset = bytes.length;
+        fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    // pops a copy of the heap, smallest first, into the ranked arrays from the back
+    private void rank() {
+        int[] scores = Arrays.copyOf(heapScores, size);
+        String[] names = Arrays.copyOf(heapNames, size);
+        rankedScores = new int[size];
+        rankedNames = new String[size];
+        for (int n = size; n > 0; n--) {
+            rankedScores[n - 1] = scores[0];
+            rankedNames[n - 1] = names[0];
+            siftDown(scores, names, n - 1, scores[n - 1], names[n - 1]);
+        }
+    }
+}
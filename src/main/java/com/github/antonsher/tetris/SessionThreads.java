@@ -0,0 +1,58 @@
+package com.github.antonsher.tetris;
+
+import java.lang.reflect.Method;
+
+/**
+ * Starts one thread per network session: a virtual thread when the running JVM can start one (Java 21+, or
+ * Java 19 and 20 with {@code --enable-preview}), otherwise a daemon platform thread with a small stack so that thousands of them still fit.
+ */
+final class SessionThreads {
+    static final long FALLBACK_STACK_SIZE = 256 * 1024;
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method START;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method start = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            start = builder.getMethod("start", Runnable.class);
+            // on Java 19 and 20 the methods are there but throw unless preview features are enabled
+            start.invoke(name.invoke(ofVirtual.invoke(null), "Tetris virtual thread probe"), (Runnable) () -> {
+            });
+        } catch (ReflectiveOperationException e) {
+            // an older JVM, platform threads it is
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        START = start;
+    }
+
+    private SessionThreads() {
+    }
+
+    static boolean isVirtual() {
+        return OF_VIRTUAL != null;
+    }
+
+    static Thread start(String name, Runnable task) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) START.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not start a virtual thread", e);
+            }
+        }
+        Thread thread = new Thread(null, task, name, FALLBACK_STACK_SIZE);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
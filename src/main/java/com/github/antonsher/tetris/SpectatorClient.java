@@ -0,0 +1,76 @@
+package com.github.antonsher.tetris;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a game streamed by a {@link SpectatorServer}, keeping a mirror of it up to date, and prints the stream
+ * rate and the mirrored score every few seconds.
+ * <p>
+ * Usage: {@code SpectatorClient [host] [port] [seconds]}, with 0 seconds to follow the game until it is closed.
+ */
+public class SpectatorClient {
+    static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : SpectatorServer.DEFAULT_PORT;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        DeltaDecoder decoder = new DeltaDecoder();
+        ByteBuffer message = ByteBuffer.allocate(256);
+        long start = System.nanoTime();
+        long end = seconds > 0 ? start + TimeUnit.SECONDS.toNanos(seconds) : Long.MAX_VALUE;
+        long nextReport = start + REPORT_NANOS;
+        long frames = 0;
+        long bytes = 0;
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (System.nanoTime() < end) {
+                int length = readVarInt(in);
+                if (message.capacity() < length) {
+                    message = ByteBuffer.allocate(Math.max(length, 2 * message.capacity()));
+                }
+                message.clear();
+                in.readFully(message.array(), 0, length);
+                message.limit(length);
+                decoder.decode(message);
+                frames++;
+                bytes += SpectatorStream.varIntSize(length) + length;
+
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report(decoder.getMirror(), frames, bytes, now - start);
+                    nextReport = now + REPORT_NANOS;
+                }
+            }
+        } catch (EOFException e) {
+            // the game was closed
+        }
+        if (decoder.getMirror() != null) {
+            report(decoder.getMirror(), frames, bytes, System.nanoTime() - start);
+        }
+    }
+
+    private static void report(TetrisModel mirror, long frames, long bytes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%d frames, %d bytes, %.1f bytes/s; score %d, lines %d, level %d, %s%n",
+                frames, bytes, bytes / seconds, mirror.score, mirror.lines, mirror.level, mirror.state);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
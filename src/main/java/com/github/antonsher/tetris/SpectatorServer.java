@@ -0,0 +1,222 @@
+package com.github.antonsher.tetris;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams the frames of a {@link SpectatorStream} to every spectator connected on a loopback port, from a single
+ * non-blocking thread. All subscribers share the same read-only frames, each only with a position of its own.
+ * <p>
+ * A new subscriber first gets the latest keyframe and the frames after it. A subscriber that falls
+ * {@link #MAX_PENDING_BYTES} behind is disconnected instead of buffered for without bound.
+ */
+public class SpectatorServer implements Closeable {
+    static final int DEFAULT_PORT = 7778;
+    static final int MAX_PENDING_BYTES = 1 << 20;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    // frames on their way from the game thread to the fan-out thread
+    private final Queue<ByteBuffer> published = new ConcurrentLinkedQueue<>();
+    // everything below is touched only by the fan-out thread
+    private final List<ByteBuffer> catchUp = new ArrayList<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final ByteBuffer discarded = ByteBuffer.allocate(256);
+    private volatile boolean closed;
+    private volatile int subscriberCount;
+    final LongAdder bytesPublished = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+
+    private static class Subscriber {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        int pendingBytes;
+
+        Subscriber(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    public SpectatorServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getSubscribers() {
+        return subscriberCount;
+    }
+
+    public void start() {
+        Thread thread = new Thread(this::serve, "Tetris spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // from the game thread, the frame must not change afterwards
+    public void broadcast(ByteBuffer frame) {
+        published.offer(frame);
+        selector.wakeup();
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Subscriber subscriber = (Subscriber) key.attachment();
+                        if (key.isReadable()) {
+                            read(subscriber);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(subscriber);
+                        }
+                    }
+                }
+                ByteBuffer frame;
+                while ((frame = published.poll()) != null) {
+                    fanOut(frame);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // closed
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        } finally {
+            for (int i = subscribers.size() - 1; i >= 0; i--) {
+                disconnect(subscribers.get(i));
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            // read only to notice the spectator leaving, it has nothing to say
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Subscriber subscriber = new Subscriber(channel, key);
+            key.attach(subscriber);
+            subscribers.add(subscriber);
+            subscriberCount = subscribers.size();
+            boolean caughtUp = true;
+            for (int i = 0; i < catchUp.size() && caughtUp; i++) {
+                caughtUp = enqueue(subscriber, catchUp.get(i));
+            }
+            if (caughtUp) {
+                flush(subscriber);
+            }
+        }
+    }
+
+    private void fanOut(ByteBuffer frame) {
+        bytesPublished.add(frame.remaining());
+        if ((frame.get(SpectatorStream.flagsOffset(frame)) & DeltaEncoder.KEYFRAME) != 0) {
+            catchUp.clear();
+        }
+        catchUp.add(frame);
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            Subscriber subscriber = subscribers.get(i);
+            if (enqueue(subscriber, frame)) {
+                flush(subscriber);
+            }
+        }
+    }
+
+    private boolean enqueue(Subscriber subscriber, ByteBuffer frame) {
+        if (subscriber.pendingBytes + frame.remaining() > MAX_PENDING_BYTES) {
+            disconnect(subscriber);
+            return false;
+        }
+        subscriber.pending.add(frame.duplicate());
+        subscriber.pendingBytes += frame.remaining();
+        return true;
+    }
+
+    private void flush(Subscriber subscriber) {
+        try {
+            ByteBuffer frame;
+            while ((frame = subscriber.pending.peek()) != null) {
+                int written = subscriber.channel.write(frame);
+                subscriber.pendingBytes -= written;
+                bytesSent.add(written);
+                if (frame.hasRemaining()) {
+                    // the socket buffer is full, go on when it drains
+                    subscriber.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                subscriber.pending.poll();
+            }
+            subscriber.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            disconnect(subscriber);
+        }
+    }
+
+    private void read(Subscriber subscriber) {
+        try {
+            discarded.clear();
+            if (subscriber.channel.read(discarded) < 0) {
+                disconnect(subscriber);
+            }
+        } catch (IOException e) {
+            disconnect(subscriber);
+        }
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        subscriber.key.cancel();
+        try {
+            subscriber.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        subscribers.remove(subscriber);
+        subscriberCount = subscribers.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        // wakes the fan-out thread up, which then disconnects the subscribers
+        selector.close();
+        serverChannel.close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.antonsher.tetris;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the changes of one game into frames for a {@link SpectatorServer}: a {@link DeltaEncoder} message
+ * prefixed with its length as a varint. Every {@link #KEYFRAME_INTERVAL_NANOS} the message is a keyframe, so a
+ * spectator that joins late catches up from a short tail of the stream.
+ * <p>
+ * Must be fed on the thread that owns the model.
+ */
+public class SpectatorStream {
+    static final long KEYFRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // room for the longest varint of an int
+    static final int LENGTH_BYTES = 5;
+
+    private final SpectatorServer server;
+    private final DeltaEncoder encoder;
+    private final ByteBuffer message;
+    private long lastKeyframe;
+
+    public SpectatorStream(SpectatorServer server, int width, int height) {
+        this.server = server;
+        encoder = new DeltaEncoder(width, height);
+        message = ByteBuffer.allocate(LENGTH_BYTES + DeltaEncoder.maxMessageSize(width, height));
+    }
+
+    public void publish(TetrisModel model) {
+        long now = System.nanoTime();
+        message.clear();
+        message.position(LENGTH_BYTES);
+        int flags = encoder.encode(model, message, now - lastKeyframe >= KEYFRAME_INTERVAL_NANOS);
+        if (flags == 0) {
+            return;
+        }
+        if ((flags & DeltaEncoder.KEYFRAME) != 0) {
+            lastKeyframe = now;
+        }
+        int length = message.position() - LENGTH_BYTES;
+        // the frame is shared by every subscriber, so it gets bytes of its own
+        byte[] frame = new byte[varIntSize(length) + length];
+        int offset = putVarInt(frame, length);
+        System.arraycopy(message.array(), LENGTH_BYTES, frame, offset, length);
+        server.broadcast(ByteBuffer.wrap(frame).asReadOnlyBuffer());
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarInt(byte[] out, int value) {
+        int i = 0;
+        while ((value & ~0x7F) != 0) {
+            out[i++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[i++] = (byte) value;
+        return i;
+    }
+
+    // the position of the message flags, right after the length
+    static int flagsOffset(ByteBuffer frame) {
+        int i = frame.position();
+        while ((frame.get(i) & 0x80) != 0) {
+            i++;
+        }
+        return i + 1;
+    }
+}
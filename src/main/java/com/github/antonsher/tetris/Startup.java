@@ -0,0 +1,85 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisModel.State;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The startup pipeline of the Swing client: slow work runs on background threads while the frame is built,
+ * and the time to the first playable frame is measured.
+ * <p>
+ * With {@code -Dtetris.startup=true} that time is printed, and {@link #exitAfterFirstFrame} ends the JVM right
+ * after it, which makes a training run for an AppCDS archive (see the README).
+ */
+final class Startup {
+    static final boolean REPORT = Boolean.getBoolean("tetris.startup");
+    static final int WARM_UP_PIECES = 200;
+
+    // daemon threads, so a slow background task never keeps the JVM alive
+    static final Executor BACKGROUND = task -> {
+        Thread thread = new Thread(task, "Tetris startup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    };
+
+    private static long mainStarted = System.nanoTime();
+    private static volatile boolean firstFramePainted;
+    static volatile boolean exitAfterFirstFrame;
+
+    private Startup() {
+    }
+
+    static void mainStarted() {
+        mainStarted = System.nanoTime();
+    }
+
+    // called by the board painters for every frame, only the first one of a running game counts
+    static void framePainted(TetrisSnapshot snapshot) {
+        if (firstFramePainted || snapshot.state != State.LET_USER_MOVE) {
+            return;
+        }
+        firstFramePainted = true;
+        if (REPORT || exitAfterFirstFrame) {
+            long sinceMain = (System.nanoTime() - mainStarted) / 1_000_000;
+            String sinceJvm = ProcessHandle.current().info().startInstant()
+                    .map(start -> ", " + Duration.between(start, Instant.now()).toMillis() + " ms after JVM start")
+                    .orElse("");
+            System.out.println("First playable frame " + sinceMain + " ms after main" + sinceJvm);
+        }
+        if (exitAfterFirstFrame) {
+            System.exit(0);
+        }
+    }
+
+    // plays a short headless game and paints it off screen, so the model, the autoplayer and the Java2D loops
+    // are loaded and compiled while the real frame is being built
+    static CompletableFuture<Void> warmUp(int columns, int rows, Color[] colors, int cellSize) {
+        return CompletableFuture.runAsync(() -> {
+            TetrisEngine engine = new TetrisEngine(new TetrisModel(columns, rows, 0));
+            AutoPlayer player = new AutoPlayer(engine.model);
+            engine.start();
+            TetrisSnapshot snapshot = null;
+            int width = Math.min(columns * (cellSize + 1) + 1, 1024);
+            int height = Math.min(rows * (cellSize + 1) + 1, 1024);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics g = image.createGraphics();
+            try {
+                while (!engine.isOver() && engine.pieces < WARM_UP_PIECES) {
+                    player.play(engine);
+                    engine.tick();
+                    snapshot = TetrisSnapshot.of(engine.model, snapshot);
+                    BoardPanel.paintBoard(g, snapshot, colors, cellSize, width, height);
+                }
+            } finally {
+                g.dispose();
+            }
+        }, BACKGROUND);
+    }
+}
@@ -1,57 +1,142 @@
 package com.github.antonsher.tetris;
 
+import com.github.antonsher.tetris.TetrisEngine.Input;
 import com.github.antonsher.tetris.TetrisModel.State;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
 public class Tetris {
-    int CELL_SIZE = 32;
-    Color[] COLORS = {Color.BLACK, Color.BLUE, Color.GREEN, Color.MAGENTA, Color.YELLOW, Color.RED, Color.CYAN, Color.ORANGE};
-    public int height = CELL_SIZE * 20 + 21;
-    public int boardWidth = CELL_SIZE * 10 + 11;
+    static final File REPLAYS_DIR = new File(System.getProperty("user.home"), "tetris-replays");
+    static final int MAX_CELL_SIZE = 32;
+    static final int MIN_CELL_SIZE = 4;
+    static final int STATS_HEIGHT = 560;
+    int CELL_SIZE;
+    static final Color[] COLORS = {Color.BLACK, Color.BLUE, Color.GREEN, Color.MAGENTA, Color.YELLOW, Color.RED, Color.CYAN, Color.ORANGE};
+    public int height;
+    // the visible part of the board, smaller than height when the board has to scroll
+    public int viewHeight;
+    public int boardWidth;
     public int statsWidth = 120;
-    public int width = boardWidth + statsWidth;
-    public ReentrantLock lock = new ReentrantLock();
-    public Condition condition = lock.newCondition();
+    public int width;
 
-    public TetrisModel model = new TetrisModel();
+    public ScoreStore scores = new ScoreStore(new File(System.getProperty("user.home"), "tetris-highscores.txt").toPath());
+    // the game in progress is saved here on every lock and resumed on the next start, unless it is null
+    public Autosaver autosaver = new Autosaver(new File(System.getProperty("user.home"), "tetris-save.bin").toPath());
+    public TetrisModel model;
+    public TetrisEngine engine;
+    public GameClock clock;
+    public boolean activeRendering = false;
+    public boolean autoPlay = false;
+    public int targetFps = 60;
+    // streams the game to spectators on this loopback port when not negative
+    public int spectatorPort = -1;
+
+    public Tetris() {
+        this(10, 20);
+    }
+
+    public Tetris(int columns, int rows) {
+        model = new TetrisModel(columns, rows);
+        engine = new TetrisEngine(model);
+        clock = new GameClock(engine);
+
+        int screenHeight = GraphicsEnvironment.isHeadless() ? Integer.MAX_VALUE : Toolkit.getDefaultToolkit().getScreenSize().height - 80;
+        CELL_SIZE = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, screenHeight / rows - 1));
+        height = CELL_SIZE * rows + rows + 1;
+        viewHeight = Math.min(height, screenHeight);
+        boardWidth = CELL_SIZE * columns + columns + 1;
+        width = boardWidth + statsWidth;
+    }
+
+    public void runGame() {
+        engine.recorder = new ReplayRecorder();
+        engine.history = new UndoHistory(UndoHistory.DEFAULT_CAPACITY);
+        if (autoPlay) {
+            clock.setAutoPlayer(new AutoPlayer(model));
+        }
+        if (autosaver != null) {
+            clock.setAutosaver(autosaver);
+            // closing the window exits right away, a save still being written is finished first
+            Runtime.getRuntime().addShutdownHook(new Thread(autosaver::flush, "Tetris autosave"));
+        }
+        if (spectatorPort >= 0) {
+            try {
+                SpectatorServer spectators = new SpectatorServer(spectatorPort);
+                spectators.start();
+                clock.setSpectators(new SpectatorStream(spectators, model.getBoardWidth(), model.getBoardHeight()));
+                System.out.println("Streaming to spectators on port " + spectators.getPort());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // the frame does not wait for the scores or for warm classes, they arrive while it is being built
+        CompletableFuture<ScoreStore> scoresLoaded = scores.loadAsync(Startup.BACKGROUND);
+        Startup.warmUp(model.getBoardWidth(), model.getBoardHeight(), COLORS, CELL_SIZE);
 
-    public void runGame() throws InterruptedException {
         JFrame tetris = new JFrame("Tetris");
         tetris.setLayout(null);
         tetris.setBackground(Color.GRAY);
 
-        JPanel boardPanel = new BoardPanel(model, COLORS, CELL_SIZE);
+        boolean scrolling = viewHeight < height;
+        Component boardPanel;
+        Runnable boardRepainter;
+        JScrollPane boardScroller = null;
+        if (activeRendering && !scrolling) {
+            BoardCanvas boardCanvas = new BoardCanvas(clock::snapshot, COLORS, CELL_SIZE, targetFps,
+                    fps -> SwingUtilities.invokeLater(() -> tetris.setTitle("Tetris (" + fps + " fps)")));
+            boardPanel = boardCanvas;
+            boardRepainter = () -> {
+            };
+        } else if (scrolling) {
+            // a heavyweight canvas does not scroll, boards taller than the screen are always painted by Swing
+            BoardPanel scrolledPanel = new BoardPanel(clock::snapshot, COLORS, CELL_SIZE);
+            scrolledPanel.setPreferredSize(new Dimension(boardWidth, height));
+            boardPanel = scrolledPanel;
+            boardScroller = new JScrollPane(boardPanel, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+            boardRepainter = () -> {
+                scrolledPanel.scrollRectToVisible(scrolledPanel.tetraBounds());
+                scrolledPanel.repaint();
+            };
+        } else {
+            boardPanel = new BoardPanel(clock::snapshot, COLORS, CELL_SIZE);
+            boardRepainter = boardPanel::repaint;
+        }
         boardPanel.setBackground(Color.BLACK);
 
-        tetris.add(boardPanel);
+        Component boardView = boardScroller != null ? boardScroller : boardPanel;
+        int boardViewWidth = boardScroller != null ? boardWidth + boardScroller.getVerticalScrollBar().getPreferredSize().width : boardWidth;
+        int frameHeight = Math.max(viewHeight, STATS_HEIGHT);
+        tetris.add(boardView);
 
         JPanel statsPanel = new JPanel(null);
         tetris.add(statsPanel);
 
-        JPanel nextPanel = new NextPanel(model, COLORS);
+        JPanel nextPanel = new NextPanel(clock::snapshot, COLORS);
         statsPanel.add(nextPanel);
 
         JLabel scoreLabel = new JLabel("Score");
@@ -77,15 +162,17 @@ public class Tetris {
         JTextArea highScoresArea = new JTextArea();
         highScoresArea.setEditable(false);
         highScoresArea.setFont(new Font("monospaced", Font.PLAIN, 12));
-        highScoresArea.setText(makeScoresText(model.highScores));
         statsPanel.add(highScoresArea);
-        AtomicBoolean newGame = new AtomicBoolean();
-        AtomicBoolean pause = new AtomicBoolean();
-        newGameButton.addActionListener(e -> awakenNewGame(newGame));
+        scoresLoaded.thenAccept(loaded -> SwingUtilities.invokeLater(() -> highScoresArea.setText(makeScoresText(loaded))));
+        newGameButton.addActionListener(e -> clock.requestNewGame());
+
+        // the render thread of a canvas notices model changes by itself
+        int boardWidget = boardPanel instanceof BoardCanvas ? 0 : ViewUpdater.BOARD;
+        ViewUpdater updater = new ViewUpdater(clock::snapshot, boardRepainter, nextPanel, scoreField, linesField, levelField);
 
         Runnable boundsUpdater = () -> {
-            boardPanel.setBounds(0, 0, boardWidth, height);
-            statsPanel.setBounds(boardWidth, 0, statsWidth, height);
+            boardView.setBounds(0, 0, boardViewWidth, viewHeight);
+            statsPanel.setBounds(boardViewWidth, 0, statsWidth, frameHeight);
             int y = 10;
             nextPanel.setBounds(10, y, 85, 85);
             y += 90;
@@ -109,7 +196,7 @@ public class Tetris {
             highScoresLabel.setBounds(10, y, 100, 24);
             y += 30;
             highScoresArea.setBounds(10, y, 100, 160);
-            tetris.setSize(new Dimension(width, height + 20));
+            tetris.setSize(new Dimension(boardViewWidth + statsWidth, frameHeight + 20));
         };
 
         tetris.addComponentListener(new ComponentAdapter() {
@@ -130,41 +217,94 @@ public class Tetris {
             }
         });
 
+        clock.setListener(new GameClock.Listener() {
+            @Override
+            public void started() {
+                updater.mark(ViewUpdater.STATS | boardWidget);
+                SwingUtilities.invokeLater(() -> {
+                    statsPanel.remove(gameOverLabel);
+                    statsPanel.remove(newGameButton);
+                    boundsUpdater.run();
+                    tetris.repaint();
+                    boardPanel.requestFocus();
+                });
+            }
+
+            @Override
+            public void ticked() {
+                // a lock deals the next tetra and may clear lines, a plain tick only moves the tetra down
+                updater.mark(engine.locked ? ViewUpdater.STATS | boardWidget : boardWidget);
+                TetrisSnapshot snapshot = clock.snapshot();
+                if (snapshot.state == State.LOST) {
+                    saveReplay();
+                    // neither the clock nor the EDT waits for the scores to load or for the journal to be written
+                    scoresLoaded.thenAccept(loaded -> SwingUtilities.invokeLater(() -> {
+                        if (scores.qualifies(snapshot.score)) {
+                            String name = (String) JOptionPane.showInputDialog(tetris, "Enter your name", "High score!", JOptionPane.QUESTION_MESSAGE, null, null, null);
+                            Startup.BACKGROUND.execute(() -> {
+                                scores.add(snapshot.score, name);
+                                String text = makeScoresText(scores);
+                                SwingUtilities.invokeLater(() -> highScoresArea.setText(text));
+                            });
+                        }
+
+                        statsPanel.add(gameOverLabel);
+                        statsPanel.add(newGameButton);
+                        boundsUpdater.run();
+                    }));
+                    SwingUtilities.invokeLater(tetris::repaint);
+                }
+            }
+
+            @Override
+            public void moved() {
+                updater.mark(boardWidget);
+            }
+
+            @Override
+            public void undone() {
+                updater.mark(ViewUpdater.STATS | boardWidget);
+            }
+        });
+
         boardPanel.addKeyListener(new KeyAdapter() {
             @Override
             public void keyReleased(KeyEvent e) {
+                if (TetrisMetrics.ENABLED) {
+                    TetrisMetrics.INSTANCE.inputReceived();
+                }
                 if (e.getKeyCode() == KeyEvent.VK_P) {
-                    pause.set(!pause.get());
-                    if (!pause.get()) {
+                    clock.setPaused(!clock.isPaused());
+                    if (!clock.isPaused()) {
                         statsPanel.remove(pauseLabel);
-                        awaken();
                     } else {
                         statsPanel.add(pauseLabel);
                     }
-                    tetris.repaint();
+                    statsPanel.repaint();
                 }
-                if (pause.get()) {
+                if (clock.isPaused()) {
                     return;
                 }
                 switch (e.getKeyCode()) {
                     case KeyEvent.VK_LEFT:
-                        model.moveLeft();
+                        clock.submit(Input.LEFT);
                         break;
                     case KeyEvent.VK_RIGHT:
-                        model.moveRight();
+                        clock.submit(Input.RIGHT);
                         break;
                     case KeyEvent.VK_UP:
-                        model.rotate();
+                        clock.submit(Input.ROTATE);
                         break;
                     case KeyEvent.VK_DOWN:
-                        model.moveDown();
+                        clock.submit(Input.DOWN);
                         break;
                     case KeyEvent.VK_SPACE:
-                        model.drop();
-                        awaken();
+                        clock.submit(Input.DROP);
+                        break;
+                    case KeyEvent.VK_BACK_SPACE:
+                        clock.requestUndo();
                         break;
                 }
-                tetris.repaint();
             }
         });
 
@@ -175,157 +315,44 @@ public class Tetris {
         tetris.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         Dimension dim = Toolkit.getDefaultToolkit().getScreenSize();
-        tetris.setLocation(dim.width / 2 - width / 2, dim.height / 2 - height / 2);
+        tetris.setLocation(dim.width / 2 - width / 2, dim.height / 2 - viewHeight / 2);
 
         tetris.setVisible(true);
-
-        model.generateNext();
-        while (true) {
-            switch (model.state) {
-                case PLACE_NEXT:
-                    if (model.canPlace(model.next)) {
-                        for (int i = 0; i < model.next.length; i++) {
-                            int[] tile = model.next[i];
-                            model.tetra[i][0] = tile[0];
-                            model.tetra[i][1] = tile[1];
-                        }
-                        model.generateNext();
-                        model.state = State.LET_USER_MOVE;
-                    } else {
-                        model.set(model.next);
-                        model.state = State.LOST;
-                        SwingUtilities.invokeLater(() -> {
-                            if (model.haveHighScore()) {
-                                String name = (String) JOptionPane.showInputDialog(tetris, "Enter your name", "High score!", JOptionPane.QUESTION_MESSAGE, null, null, null);
-                                model.saveHighScore(name);
-                                highScoresArea.setText(makeScoresText(model.highScores));
-                            }
-
-                            statsPanel.add(gameOverLabel);
-                            statsPanel.add(newGameButton);
-                            boundsUpdater.run();
-                        });
-                        SwingUtilities.invokeLater(tetris::repaint);
-                    }
-                    break;
-                case LET_USER_MOVE:
-                    boardPanel.requestFocus();
-                    awaitAccordingToLevel(pause);
-                    model.state = State.MOVE_DOWN;
-                    break;
-                case MOVE_DOWN:
-                    if (model.canMoveDown()) {
-                        for (int i = 0; i < 4; i++) {
-                            int[] tile = model.tetra[i];
-                            tile[1]--;
-                        }
-                        model.state = State.LET_USER_MOVE;
-                    } else {
-                        model.freezeAndClearFullLines();
-                        model.state = State.PLACE_NEXT;
-
-                        SwingUtilities.invokeLater(() -> {
-                            levelField.setText("" + model.level);
-                            scoreField.setText("" + model.score);
-                            linesField.setText("" + model.lines);
-                            boundsUpdater.run();
-                            tetris.repaint();
-                        });
-                    }
-                    break;
-                case LOST:
-                    awaitBeforeNewGame();
-                    if (newGame.get()) {
-                        for (int x = 0; x < 10; x++) {
-                            for (int y = 0; y < 20; y++) {
-                                model.setBoardTile(x, y, 0);
-                            }
-                        }
-                        model.generateNext();
-                        model.state = State.PLACE_NEXT;
-                        model.score = 0;
-                        model.lines = 0;
-                        model.level = 0;
-                        model.tillNext = model.LINES_PER_LEVEL;
-                        SwingUtilities.invokeLater(() -> {
-                            scoreField.setText("0");
-                            linesField.setText("0");
-                            levelField.setText("0");
-                            statsPanel.remove(gameOverLabel);
-                            statsPanel.remove(newGameButton);
-                            boundsUpdater.run();
-                            tetris.repaint();
-                        });
-                        newGame.set(false);
-                        boardPanel.requestFocus();
-                    }
-                    break;
-            }
-            SwingUtilities.invokeLater(boardPanel::repaint);
+        if (boardPanel instanceof BoardCanvas) {
+            ((BoardCanvas) boardPanel).start();
         }
-    }
 
-    private void awaitBeforeNewGame() throws InterruptedException {
-        lock.lock();
-        try {
-            condition.await(500, TimeUnit.MILLISECONDS);
-        } finally {
-            lock.unlock();
-        }
+        clock.run();
     }
 
-    private void awaitAccordingToLevel(AtomicBoolean pause) throws InterruptedException {
-        lock.lock();
-        try {
-            condition.await(1000 / (model.level + 1), TimeUnit.MILLISECONDS);
-            while (pause.get()) {
-                lock.lock();
-                try {
-                    condition.await(50, TimeUnit.MILLISECONDS);
-                } finally {
-                    lock.unlock();
-                }
+    // copies the finished replay on the clock thread, the recorder is reused by the next game, and writes it in the
+    // background
+    private void saveReplay() {
+        byte[] replay = engine.recorder.toByteArray();
+        Path file = REPLAYS_DIR.toPath().resolve(System.currentTimeMillis() + "-" + engine.seed + ReplayRecorder.EXTENSION);
+        Startup.BACKGROUND.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                Files.write(file, replay);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private void awakenNewGame(AtomicBoolean newGame) {
-        lock.lock();
-        try {
-            newGame.set(true);
-            condition.signalAll();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private void awaken() {
-        lock.lock();
-        try {
-            condition.signalAll();
-        } finally {
-            lock.unlock();
-        }
+        });
     }
 
-    public String makeScoresText(List<Object[]> highScores) {
-        if (highScores.isEmpty()) {
+    public String makeScoresText(ScoreStore highScores) {
+        if (highScores.size() == 0) {
             return "";
         }
-        int max = 0;
-        for (Object[] highScore : highScores) {
-            max = Math.max((int) highScore[0], max);
-        }
+        int max = highScores.score(0);
 
         String format = "%" + (Integer.toString(max).length()) + "d %s\n";
-        String scores = "";
-        for (Object[] score : highScores) {
-            scores = String.format(format, score[0], score[1]) + scores;
+        StringBuilder text = new StringBuilder();
+        for (int rank = 0; rank < highScores.size(); rank++) {
+            text.append(String.format(format, highScores.score(rank), highScores.name(rank)));
         }
 
-        return scores;
+        return text.toString();
     }
 
 }
@@ -0,0 +1,179 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisModel.State;
+
+/**
+ * Drives the {@link TetrisModel} state machine without any display, threads or waiting.
+ * A tick is one gravity step; the transient PLACE_NEXT and MOVE_DOWN states are resolved
+ * within it, so between calls the model is either in LET_USER_MOVE or in LOST.
+ */
+public class TetrisEngine {
+    public enum Input {
+        NONE,
+        LEFT,
+        RIGHT,
+        ROTATE,
+        DOWN,
+        DROP,
+    }
+
+    public final TetrisModel model;
+    public long ticks = 0;
+    public int pieces = 0;
+    // whether the last tick froze the tetra into the board
+    public boolean locked = false;
+    // seed of the current game, the game is fully determined by it and the inputs
+    public long seed;
+    public ReplayRecorder recorder;
+    // keeps the spawned tetras for undo when set
+    public UndoHistory history;
+
+    public TetrisEngine(TetrisModel model) {
+        this.model = model;
+    }
+
+    public TetrisEngine(long seed) {
+        this(new TetrisModel(seed));
+    }
+
+    public State start() {
+        return start(model.random.nextLong());
+    }
+
+    public State start(long seed) {
+        this.seed = seed;
+        model.pieceQueue.reset(seed);
+        if (recorder != null) {
+            recorder.start(model, seed);
+        }
+        if (history != null) {
+            history.clear();
+        }
+        model.reset();
+        model.generateNext();
+        ticks = 0;
+        pieces = 0;
+        locked = false;
+        placeNext();
+        return model.state;
+    }
+
+    public boolean input(Input input) {
+        if (model.state != State.LET_USER_MOVE) {
+            return false;
+        }
+        int changes = model.changes;
+        switch (input) {
+            case LEFT:
+                model.moveLeft();
+                break;
+            case RIGHT:
+                model.moveRight();
+                break;
+            case ROTATE:
+                model.rotate();
+                break;
+            case DOWN:
+                model.moveDown();
+                break;
+            case DROP:
+                model.drop();
+                break;
+        }
+        if (recorder != null && model.changes != changes) {
+            recorder.input(ticks, input);
+        }
+        return true;
+    }
+
+    public State tick() {
+        locked = false;
+        switch (model.state) {
+            case PLACE_NEXT:
+                placeNext();
+                break;
+            case LET_USER_MOVE:
+                model.state = State.MOVE_DOWN;
+                moveDown();
+                break;
+            case MOVE_DOWN:
+                moveDown();
+                break;
+            case LOST:
+                return model.state;
+        }
+        ticks++;
+        if (recorder != null && model.state == State.LOST) {
+            recorder.finish(this);
+        }
+        return model.state;
+    }
+
+    public State step(Input input) {
+        input(input);
+        return tick();
+    }
+
+    // takes back the last locked tetra: the board, the stats and the tetras in play return to when it spawned,
+    // while the piece queue goes on, so the pieces after the next one can differ from the first time
+    public boolean undo() {
+        if (history == null || model.state != State.LET_USER_MOVE || !history.pop()) {
+            return false;
+        }
+        history.restoreTo(this);
+        locked = false;
+        if (recorder != null) {
+            recorder.undo(ticks);
+        }
+        return true;
+    }
+
+    public boolean isOver() {
+        return model.state == State.LOST;
+    }
+
+    private void moveDown() {
+        if (model.canMoveDown()) {
+            for (int i = 0; i < 4; i++) {
+                int[] tile = model.tetra[i];
+                tile[1]--;
+            }
+            model.changes++;
+            model.state = State.LET_USER_MOVE;
+        } else {
+            if (TetrisMetrics.ENABLED) {
+                long start = System.nanoTime();
+                int lines = model.lines;
+                model.freezeAndClearFullLines();
+                TetrisMetrics.INSTANCE.locked(start, model.lines - lines);
+            } else {
+                model.freezeAndClearFullLines();
+            }
+            locked = true;
+            model.state = State.PLACE_NEXT;
+            placeNext();
+        }
+    }
+
+    private void placeNext() {
+        if (model.canPlace(model.next)) {
+            for (int i = 0; i < model.next.length; i++) {
+                int[] tile = model.next[i];
+                model.tetra[i][0] = tile[0];
+                model.tetra[i][1] = tile[1];
+            }
+            model.generateNext();
+            pieces++;
+            if (history != null) {
+                history.push(this);
+            }
+            if (TetrisMetrics.ENABLED) {
+                TetrisMetrics.INSTANCE.piecePlaced();
+            }
+            model.state = State.LET_USER_MOVE;
+        } else {
+            model.set(model.next);
+            model.state = State.LOST;
+        }
+    }
+}
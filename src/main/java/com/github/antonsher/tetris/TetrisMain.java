@@ -2,6 +2,41 @@ package com.github.antonsher.tetris;
 
 public class TetrisMain {
     public static void main(String[] args) throws Exception {
-        new Tetris().runGame();
+        Startup.mainStarted();
+        int columns = 10;
+        int rows = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--width=")) {
+                columns = Integer.parseInt(arg.substring("--width=".length()));
+            } else if (arg.startsWith("--height=")) {
+                rows = Integer.parseInt(arg.substring("--height=".length()));
+            }
+        }
+        if (!TetrisModel.isValidBoard(columns, rows)) {
+            System.err.println("The board must be 4 to " + TetrisModel.MAX_WIDTH + " columns wide and 4 to "
+                    + TetrisModel.MAX_HEIGHT + " rows high");
+            System.exit(2);
+        }
+        Tetris tetris = new Tetris(columns, rows);
+        for (String arg : args) {
+            if (arg.equals("--active")) {
+                tetris.activeRendering = true;
+            } else if (arg.equals("--auto")) {
+                tetris.autoPlay = true;
+            } else if (arg.startsWith("--fps=")) {
+                tetris.targetFps = Integer.parseInt(arg.substring("--fps=".length()));
+            } else if (arg.equals("--spectators")) {
+                tetris.spectatorPort = SpectatorServer.DEFAULT_PORT;
+            } else if (arg.startsWith("--spectators=")) {
+                tetris.spectatorPort = Integer.parseInt(arg.substring("--spectators=".length()));
+            } else if (arg.equals("--no-autosave")) {
+                tetris.autosaver = null;
+            } else if (arg.equals("--exit-after-first-frame")) {
+                Startup.exitAfterFirstFrame = true;
+            } else if (arg.startsWith("--generator=")) {
+                tetris.model.pieceQueue = new PieceQueue(PieceGenerator.forName(arg.substring("--generator=".length())));
+            }
+        }
+        tetris.runGame();
     }
 }
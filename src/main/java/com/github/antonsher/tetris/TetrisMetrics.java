@@ -0,0 +1,184 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.LatencyHistogram.LatencySummary;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Game loop instrumentation, enabled with {@code -Dtetris.metrics=true}. The numbers are published as the
+ * {@code com.github.antonsher.tetris:type=Metrics} MXBean, and every sample is also emitted as a JFR event
+ * in the "Tetris" category. Call sites check the static final {@link #ENABLED} flag first, so when it is off
+ * the JIT removes the instrumentation entirely.
+ */
+public class TetrisMetrics implements TetrisMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("tetris.metrics");
+    public static final TetrisMetrics INSTANCE = new TetrisMetrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("com.github.antonsher.tetris:type=Metrics"));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final AtomicLong pieces = new AtomicLong();
+    private final AtomicLong locks = new AtomicLong();
+    private final AtomicLong lineClears = new AtomicLong();
+    private final AtomicLong linesCleared = new AtomicLong();
+    private final LatencyHistogram inputToRender = new LatencyHistogram();
+    private final LatencyHistogram gravityJitter = new LatencyHistogram();
+    private final LatencyHistogram paint = new LatencyHistogram();
+    private final LatencyHistogram freezeAndClear = new LatencyHistogram();
+    // time of the oldest input not painted yet, 0 if there is none
+    private final AtomicLong pendingInput = new AtomicLong();
+
+    public void inputReceived() {
+        pendingInput.compareAndSet(0, System.nanoTime());
+    }
+
+    public void framePainted(long startNanos) {
+        long end = System.nanoTime();
+        paint.record(end - startNanos);
+        long input = pendingInput.getAndSet(0);
+        if (input != 0) {
+            inputToRender.record(end - input);
+        }
+        PaintEvent event = new PaintEvent();
+        if (event.isEnabled()) {
+            event.paintNanos = end - startNanos;
+            event.inputToRenderNanos = input != 0 ? end - input : 0;
+            event.commit();
+        }
+    }
+
+    public void gravityTicked(long deadlineNanos, long nowNanos, int level) {
+        gravityJitter.record(nowNanos - deadlineNanos);
+        GravityTickEvent event = new GravityTickEvent();
+        if (event.isEnabled()) {
+            event.jitterNanos = nowNanos - deadlineNanos;
+            event.level = level;
+            event.commit();
+        }
+    }
+
+    public void piecePlaced() {
+        pieces.incrementAndGet();
+    }
+
+    public void locked(long startNanos, int lines) {
+        long duration = System.nanoTime() - startNanos;
+        freezeAndClear.record(duration);
+        locks.incrementAndGet();
+        if (lines > 0) {
+            lineClears.incrementAndGet();
+            linesCleared.addAndGet(lines);
+        }
+        LockEvent event = new LockEvent();
+        if (event.isEnabled()) {
+            event.freezeAndClearNanos = duration;
+            event.lines = lines;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getPieces() {
+        return pieces.get();
+    }
+
+    @Override
+    public long getLocks() {
+        return locks.get();
+    }
+
+    @Override
+    public long getLineClears() {
+        return lineClears.get();
+    }
+
+    @Override
+    public long getLinesCleared() {
+        return linesCleared.get();
+    }
+
+    @Override
+    public LatencySummary getInputToRender() {
+        return inputToRender.summarize();
+    }
+
+    @Override
+    public LatencySummary getGravityJitter() {
+        return gravityJitter.summarize();
+    }
+
+    @Override
+    public LatencySummary getPaint() {
+        return paint.summarize();
+    }
+
+    @Override
+    public LatencySummary getFreezeAndClear() {
+        return freezeAndClear.summarize();
+    }
+
+    @Override
+    public void reset() {
+        pieces.set(0);
+        locks.set(0);
+        lineClears.set(0);
+        linesCleared.set(0);
+        inputToRender.reset();
+        gravityJitter.reset();
+        paint.reset();
+        freezeAndClear.reset();
+    }
+
+    @Name("com.github.antonsher.tetris.Paint")
+    @Label("Board Paint")
+    @Category("Tetris")
+    static class PaintEvent extends Event {
+        @Label("Paint Time")
+        @Timespan
+        long paintNanos;
+
+        @Label("Input To Render")
+        @Timespan
+        long inputToRenderNanos;
+    }
+
+    @Name("com.github.antonsher.tetris.GravityTick")
+    @Label("Gravity Tick")
+    @Category("Tetris")
+    static class GravityTickEvent extends Event {
+        @Label("Jitter")
+        @Timespan
+        long jitterNanos;
+
+        @Label("Level")
+        int level;
+    }
+
+    @Name("com.github.antonsher.tetris.Lock")
+    @Label("Piece Lock")
+    @Category("Tetris")
+    static class LockEvent extends Event {
+        @Label("Freeze And Clear Time")
+        @Timespan
+        long freezeAndClearNanos;
+
+        @Label("Lines")
+        int lines;
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.LatencyHistogram.LatencySummary;
+
+public interface TetrisMetricsMXBean {
+    long getPieces();
+
+    long getLocks();
+
+    long getLineClears();
+
+    long getLinesCleared();
+
+    // from a key release to the next painted frame
+    LatencySummary getInputToRender();
+
+    // how late gravity ticks fire after their deadline
+    LatencySummary getGravityJitter();
+
+    LatencySummary getPaint();
+
+    LatencySummary getFreezeAndClear();
+
+    void reset();
+}
@@ -1,23 +1,16 @@
 package com.github.antonsher.tetris;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class TetrisModel {
-    File SCORES_FILE = new File(System.getProperty("user.home"), "tetris-highscores.txt");
-    Pattern SCORE_LINE = Pattern.compile("(\\d{1,9});(.*)");
-    public List<Object[]> highScores = readScores();
+    // rows are one long each; replays, saved games and spectator streams store heights and y as unsigned shorts
+    public static final int MAX_WIDTH = 64;
+    public static final int MAX_HEIGHT = 0xFFFF;
 
-    public Random random = new Random();
+    // picks the seeds of the games, the pieces of a game come from pieceQueue
+    public SplittableRandom random = new SplittableRandom();
+    public PieceQueue pieceQueue = new PieceQueue(new BagGenerator());
 
     public int score = 0;
     public int lines = 0;
@@ -25,18 +18,64 @@ public class TetrisModel {
     public int LINES_PER_LEVEL = 20;
     public int tillNext = LINES_PER_LEVEL;
     public State state = State.PLACE_NEXT;
+    // bumped on every change of the board, the tetra or the next tetra, so renderers can skip unchanged frames
+    public int changes = 0;
+    // bumped on every change of the board alone
+    public int boardChanges = 0;
 
-    boolean haveHighScore() {
-        return score > 0 && (highScores.size() < 10 || (int) highScores.get(0)[0] < score);
+    public TetrisModel() {
+        this(10, 20);
     }
 
-    void saveHighScore(String playerName) {
-        highScores.add(0, new Object[]{score, playerName == null ? "" : playerName});
-        sortScores(highScores);
-        if (highScores.size() > 10) {
-            highScores.remove(0);
+    public TetrisModel(long seed) {
+        this(10, 20, seed);
+    }
+
+    // whether a board of this size can be played, e.g. when it comes from a file
+    public static boolean isValidBoard(int width, int height) {
+        return width >= 4 && width <= MAX_WIDTH && height >= 4 && height <= MAX_HEIGHT;
+    }
+
+    public TetrisModel(int width, int height) {
+        if (!isValidBoard(width, height)) {
+            throw new IllegalArgumentException("Board must be 4 to " + MAX_WIDTH + " columns wide and 4 to " + MAX_HEIGHT
+                    + " rows high: " + width + "x" + height);
+        }
+        WIDTH = width;
+        FULL_ROW = width == 64 ? -1L : (1L << width) - 1;
+        rows = new long[height];
+        columnHeights = new int[width];
+        colors = new int[height][width];
+        sharedRows = new boolean[height];
+        // TETRAS are laid out for a 10x20 board, centered at the top
+        SPAWN_DX = (width - 10) / 2;
+        SPAWN_DY = height - 20;
+    }
+
+    public TetrisModel(int width, int height, long seed) {
+        this(width, height);
+        random = new SplittableRandom(seed);
+    }
+
+    public void reset() {
+        for (int y = 0; y < stackHeight; y++) {
+            rows[y] = 0;
+            if (sharedRows[y]) {
+                colors[y] = new int[WIDTH];
+                sharedRows[y] = false;
+            } else {
+                Arrays.fill(colors[y], 0);
+            }
         }
-        writeScores(highScores);
+        stackHeight = 0;
+        Arrays.fill(columnHeights, 0);
+        score = 0;
+        lines = 0;
+        level = 0;
+        tillNext = LINES_PER_LEVEL;
+        state = State.PLACE_NEXT;
+        changes++;
+        boardChanges++;
     }
 
     void moveLeft() {
@@ -45,6 +84,7 @@ public class TetrisModel {
                 int[] tile = tetra[i];
                 tile[0]--;
             }
+            changes++;
         }
     }
 
@@ -54,6 +94,7 @@ public class TetrisModel {
                 int[] tile = tetra[i];
                 tile[0]++;
             }
+            changes++;
         }
     }
 
@@ -61,6 +102,7 @@ public class TetrisModel {
         int[][] rotated = rotate(tetra);
         if (canPlace(rotated)) {
             System.arraycopy(rotated, 0, tetra, 0, 4);
+            changes++;
         }
     }
 
@@ -70,18 +112,55 @@ public class TetrisModel {
                 int[] tile = tetra[i];
                 tile[1]--;
             }
+            changes++;
         }
     }
 
     void drop() {
-        while (canMoveDown()) {
+        int fall = dropDistance();
+        if (fall > 0) {
             for (int i = 0; i < 4; i++) {
-                int[] tile = tetra[i];
-                tile[1]--;
+                tetra[i][1] -= fall;
             }
+            changes++;
         }
     }
 
+    // how many rows the tetra falls on a drop, also where renderers show its ghost
+    public int dropDistance() {
+        // the lowest tile of the tetra in each column lands on that column's top
+        int fall = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int[] tile = tetra[i];
+            fall = Math.min(fall, tile[1] - columnHeights[tile[0]]);
+        }
+        if (fall >= 0) {
+            return fall;
+        }
+        // the tetra is tucked under an overhang, only the rows right below it count
+        if (!toMask(tetra)) {
+            return 0;
+        }
+        fall = 0;
+        while (fitsAt(pieceBottom - fall - 1)) {
+            fall++;
+        }
+        return fall;
+    }
+
+    private boolean fitsAt(int bottom) {
+        if (bottom < 0) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            long mask = pieceRows[i];
+            if (mask != 0 && (mask & rows[bottom + i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
     public enum State {
         PLACE_NEXT,
@@ -92,60 +171,172 @@ public class TetrisModel {
 
     public void freezeAndClearFullLines() {
         set(tetra);
-        int y = 0;
-        while (y < 20) {
-            boolean full = true;
-            for (int x = 0; x < 10; x++) {
-                if (getBoardTile(x, y) == 0) {
-                    full = false;
-                    break;
-                }
-            }
-            int atOnce = 0;
-            if (full) {
+        // only the rows the tetra touched can have become full
+        int bottom = pieceBottom(tetra);
+        int top = pieceTop(tetra);
+        int atOnce = 0;
+        for (int y = bottom; y <= top; y++) {
+            if (rows[y] == FULL_ROW) {
                 atOnce++;
-                for (int x = 0; x < 10; x++) {
-                    setBoardTile(x, y, 0);
-                    System.arraycopy(board[x], y + 1, board[x], y, 19 - y);
-                    board[x][19] = 0;
-                }
-            } else {
-                y++;
             }
-            if (atOnce > 0) {
-                lines += atOnce;
-                tillNext -= atOnce;
-                score += SCORES[atOnce - 1] * (level + 1);
+        }
+        if (atOnce == 0) {
+            return;
+        }
+
+        // compact the stack above the lowest full row in one pass
+        int cleared = 0;
+        int to = bottom;
+        int from = bottom;
+        for (; from < stackHeight; from++) {
+            if (from <= top && rows[from] == FULL_ROW) {
+                clearedColors[cleared] = sharedRows[from] ? null : colors[from];
+                cleared++;
+                continue;
+            }
+            rows[to] = rows[from];
+            colors[to] = colors[from];
+            sharedRows[to] = sharedRows[from];
+            to++;
+        }
+        for (int i = 0; to < from; to++, i++) {
+            int[] recycled = clearedColors[i];
+            if (recycled == null) {
+                recycled = new int[WIDTH];
+            } else {
+                Arrays.fill(recycled, 0);
             }
-            if (tillNext <= 0) {
-                tillNext += LINES_PER_LEVEL;
-                level++;
+            rows[to] = 0;
+            colors[to] = recycled;
+            sharedRows[to] = false;
+        }
+        stackHeight -= atOnce;
+        // a full row spans every column, so every column top was at or above all the cleared rows, and it can only
+        // sink further where the top itself was cleared
+        for (int x = 0; x < WIDTH; x++) {
+            int height = columnHeights[x] - atOnce;
+            while (height > 0 && (rows[height - 1] & 1L << x) == 0) {
+                height--;
             }
+            columnHeights[x] = height;
+        }
+        boardChanges++;
+
+        lines += atOnce;
+        tillNext -= atOnce;
+        score += SCORES[atOnce - 1] * (level + 1);
+        if (tillNext <= 0) {
+            tillNext += LINES_PER_LEVEL;
+            level++;
         }
     }
 
+    int pieceBottom(int[][] tetra) {
+        return Math.min(Math.min(tetra[0][1], tetra[1][1]), Math.min(tetra[2][1], tetra[3][1]));
+    }
+
+    int pieceTop(int[][] tetra) {
+        return Math.max(Math.max(tetra[0][1], tetra[1][1]), Math.max(tetra[2][1], tetra[3][1]));
+    }
+
     public void setBoardTile(int x, int y, int value) {
-        board[x][y] = value;
+        boardChanges++;
+        if (sharedRows[y]) {
+            colors[y] = colors[y].clone();
+            sharedRows[y] = false;
+        }
+        colors[y][x] = value;
+        if (value > 0) {
+            rows[y] |= 1L << x;
+            if (y >= stackHeight) {
+                stackHeight = y + 1;
+            }
+            if (y >= columnHeights[x]) {
+                columnHeights[x] = y + 1;
+            }
+        } else {
+            rows[y] &= ~(1L << x);
+            if (y == columnHeights[x] - 1) {
+                int top = y;
+                while (top > 0 && (rows[top - 1] & 1L << x) == 0) {
+                    top--;
+                }
+                columnHeights[x] = top;
+            }
+        }
+    }
+
+    // after the rows were replaced wholesale, finds every column top again in one pass down from the stack top
+    void updateColumnHeights() {
+        Arrays.fill(columnHeights, 0);
+        long seen = 0;
+        for (int y = stackHeight - 1; y >= 0 && seen != FULL_ROW; y--) {
+            long tops = rows[y] & ~seen;
+            seen |= tops;
+            while (tops != 0) {
+                columnHeights[Long.numberOfTrailingZeros(tops)] = y + 1;
+                tops &= tops - 1;
+            }
+        }
     }
 
     public int getBoardTile(int x, int y) {
-        return board[x][y];
+        return colors[y][x];
     }
 
     public int getBoardHeight() {
-        return board[0].length;
+        return rows.length;
     }
 
     public int getBoardWidth() {
-        return board.length;
+        return WIDTH;
     }
 
-    public int[][] board = new int[10][20];
+    // one bit-row per line, bit x is set when (x, y) is occupied; the colors live in a separate plane
+    final int WIDTH;
+    final long FULL_ROW;
+    public final long[] rows;
+    public final int[][] colors;
+    // all rows at and above stackHeight are empty
+    public int stackHeight = 0;
+    // all cells of column x at and above columnHeights[x] are empty
+    public final int[] columnHeights;
+    final int SPAWN_DX;
+    final int SPAWN_DY;
+    // color rows of the lines being cleared, reused as the new empty rows on top unless a snapshot shares them
+    int[][] clearedColors = new int[4][];
+    // color rows referenced by a BoardSnapshot, they are copied before they are written
+    final boolean[] sharedRows;
+
+    // scratch masks of the tetra being checked, pieceRows[i] is the row pieceBottom + i
+    long[] pieceRows = new long[4];
+    int pieceBottom;
+
+    boolean toMask(int[][] tetra) {
+        int bottom = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int[] tile = tetra[i];
+            if (isOutsideTheBoard(tile)) {
+                return false;
+            }
+            bottom = Math.min(bottom, tile[1]);
+        }
+        pieceRows[0] = pieceRows[1] = pieceRows[2] = pieceRows[3] = 0;
+        for (int i = 0; i < 4; i++) {
+            int[] tile = tetra[i];
+            pieceRows[tile[1] - bottom] |= 1L << tile[0];
+        }
+        pieceBottom = bottom;
+        return true;
+    }
 
     public boolean canMoveLeft() {
+        if (!toMask(tetra)) {
+            return false;
+        }
         for (int i = 0; i < 4; i++) {
-            int[] tile = tetra[i];
-            if (isOutsideTheBoard(tile) || tile[0] == 0 || board[tile[0] - 1][tile[1]] > 0) {
+            long mask = pieceRows[i];
+            if (mask != 0 && ((mask & 1) != 0 || ((mask >>> 1) & rows[pieceBottom + i]) != 0)) {
                 return false;
             }
         }
@@ -153,9 +344,12 @@ public class TetrisModel {
     }
 
     public boolean canMoveRight() {
+        if (!toMask(tetra)) {
+            return false;
+        }
         for (int i = 0; i < 4; i++) {
-            int[] tile = tetra[i];
-            if (isOutsideTheBoard(tile) || tile[0] == 9 || board[tile[0] + 1][tile[1]] > 0) {
+            long mask = pieceRows[i];
+            if (mask != 0 && ((mask >>> (WIDTH - 1)) != 0 || ((mask << 1) & rows[pieceBottom + i]) != 0)) {
                 return false;
             }
         }
@@ -163,9 +357,12 @@ public class TetrisModel {
     }
 
     public boolean canMoveDown() {
+        if (!toMask(tetra) || pieceBottom == 0) {
+            return false;
+        }
         for (int i = 0; i < 4; i++) {
-            int[] tile = tetra[i];
-            if (isOutsideTheBoard(tile) || tile[1] == 0 || board[tile[0]][tile[1] - 1] > 0) {
+            long mask = pieceRows[i];
+            if (mask != 0 && (mask & rows[pieceBottom + i - 1]) != 0) {
                 return false;
             }
         }
@@ -173,9 +370,12 @@ public class TetrisModel {
     }
 
     public boolean canPlace(int[][] tetra) {
+        if (!toMask(tetra)) {
+            return false;
+        }
         for (int i = 0; i < 4; i++) {
-            int[] tile = tetra[i];
-            if (isOutsideTheBoard(tile) || board[tile[0]][tile[1]] > 0) {
+            long mask = pieceRows[i];
+            if (mask != 0 && (mask & rows[pieceBottom + i]) != 0) {
                 return false;
             }
         }
@@ -186,8 +386,8 @@ public class TetrisModel {
     public boolean isOutsideTheBoard(int[] tile) {
         return tile[0] < 0 ||
                 tile[1] < 0 ||
-                tile[0] > 9 ||
-                tile[1] > 19;
+                tile[0] >= getBoardWidth() ||
+                tile[1] >= getBoardHeight();
     }
 
     int[] SCORES = {40, 100, 300, 1200};
@@ -196,10 +396,12 @@ public class TetrisModel {
 
 
     public void set(int[][] tetra) {
+        int kind = getTetraKind(tetra);
         for (int i = 0; i < 4; i++) {
             int[] tile = tetra[i];
-            board[tile[0]][tile[1]] = getTetraKind(tetra);
+            setBoardTile(tile[0], tile[1], kind);
         }
+        changes++;
     }
 
 
@@ -224,12 +426,14 @@ public class TetrisModel {
     }
 
     public void generateNext() {
-        int[][] tetra1 = TETRAS[random.nextInt(TETRAS.length)];
+        int[][] tetra1 = TETRAS[pieceQueue.next()];
 
-        for (int i = 0; i < 5; i++) {
-            next[i][0] = getTetraX(i, tetra1);
-            next[i][1] = getTetraY(i, tetra1);
+        for (int i = 0; i < 4; i++) {
+            next[i][0] = getTetraX(i, tetra1) + SPAWN_DX;
+            next[i][1] = getTetraY(i, tetra1) + SPAWN_DY;
         }
+        setTetraKind(next, getTetraKind(tetra1));
+        changes++;
     }
 
     int[][][] TETRAS = new int[][][]{
@@ -255,42 +459,12 @@ public class TetrisModel {
     };
 
 
-    public List<Object[]> readScores() {
-        List<Object[]> result = new ArrayList<>();
-        if (!SCORES_FILE.exists()) {
-            return result;
-        }
-        try (BufferedReader reader = new BufferedReader(new FileReader(SCORES_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Matcher m = SCORE_LINE.matcher(line);
-                if (m.matches()) {
-                    result.add(new Object[]{Integer.valueOf(m.group(1)), m.group(2)});
-                    sortScores(result);
-                }
-            }
-            return result;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return result;
-        }
-    }
-
-    public void sortScores(List<Object[]> result) {
-        result.sort((o1, o2) -> Integer.compare((int) o1[0], (int) o2[0]));
-    }
-
-    public void writeScores(List<Object[]> scores) {
-        try (PrintStream ps = new PrintStream(SCORES_FILE)) {
-            for (Object[] e : scores) {
-                ps.println(e[0] + ";" + e[1]);
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
+    public int[][] rotate(int[][] tetra) {
+        return rotate(tetra, new int[5][2]);
     }
 
-    public int[][] rotate(int[][] tetra) {
+    // rotated must not be tetra itself
+    public int[][] rotate(int[][] tetra, int[][] rotated) {
         int xMin = Integer.MAX_VALUE;
         int xMax = Integer.MIN_VALUE;
         int yMin = Integer.MAX_VALUE;
@@ -305,7 +479,6 @@ public class TetrisModel {
         int xCenter = (xMin + xMax + 1) / 2;
         int yCenter = (yMin + yMax) / 2;
 
-        int[][] rotated = new int[5][2];
         for (int i = 0; i < 4; i++) {
             int[] tile = tetra[i];
             rotated[i][0] = xCenter + yCenter - tile[1];
@@ -0,0 +1,167 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisEngine.Input;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts independent games over a small TCP protocol, one session thread per connection.
+ * <p>
+ * Usage: {@code TetrisServer [port] [maxSessions]}
+ * <p>
+ * A client opens a game by sending its seed as a long and gets a {@link DeltaEncoder} keyframe back. After that
+ * every command byte is answered by one message, prefixed with its length as a short (0 when nothing changed).
+ * The commands are the {@link Input} ordinals, {@link #TICK} for a gravity step and {@link #NEW_GAME} followed by
+ * the seed of the new game. The clock is the client's: the server never ticks on its own.
+ */
+public class TetrisServer implements Closeable {
+    static final int DEFAULT_PORT = 7777;
+    static final int DEFAULT_MAX_SESSIONS = 20_000;
+    static final int BACKLOG = 4096;
+    static final int TICK = 6;
+    static final int NEW_GAME = 7;
+    static final Input[] INPUTS = Input.values();
+
+    final ServerSocket serverSocket;
+    final int maxSessions;
+    final AtomicInteger sessions = new AtomicInteger();
+    final LongAdder commands = new LongAdder();
+    volatile boolean closed;
+
+    public TetrisServer(int port, int maxSessions) throws IOException {
+        this.maxSessions = maxSessions;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+        TetrisServer server = new TetrisServer(port, maxSessions);
+        System.out.println("Listening on " + server.serverSocket.getLocalSocketAddress()
+                + (SessionThreads.isVirtual() ? " with virtual threads" : " with platform threads"));
+        Thread reporter = new Thread(() -> {
+            long last = 0;
+            while (true) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long total = server.commands.sum();
+                System.out.println(server.sessions.get() + " sessions, " + (total - last) / 5 + " commands/s");
+                last = total;
+            }
+        }, "Tetris server stats");
+        reporter.setDaemon(true);
+        reporter.start();
+        server.serve();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    // accepts connections until closed
+    public void serve() throws IOException {
+        int id = 0;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (closed) {
+                    return;
+                }
+                throw e;
+            }
+            if (sessions.incrementAndGet() > maxSessions) {
+                sessions.decrementAndGet();
+                socket.close();
+                continue;
+            }
+            SessionThreads.start("Tetris session " + id++, () -> {
+                try {
+                    session(socket);
+                } finally {
+                    sessions.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    void session(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 256));
+            OutputStream out = s.getOutputStream();
+            TetrisEngine engine = new TetrisEngine(new TetrisModel());
+            TetrisModel model = engine.model;
+            DeltaEncoder encoder = new DeltaEncoder(model.getBoardWidth(), model.getBoardHeight());
+            // replies are collected here and written once the client has nothing more queued
+            ByteBuffer replies = ByteBuffer.allocate(4 * (2 + DeltaEncoder.maxMessageSize(model.getBoardWidth(), model.getBoardHeight())));
+            engine.start(in.readLong());
+            boolean keyframe = true;
+            while (true) {
+                if (replies.remaining() < 2 + DeltaEncoder.maxMessageSize(model.getBoardWidth(), model.getBoardHeight())) {
+                    out.write(replies.array(), 0, replies.position());
+                    replies.clear();
+                }
+                int lengthPosition = replies.position();
+                replies.putShort((short) 0);
+                encoder.encode(model, replies, keyframe);
+                keyframe = false;
+                replies.putShort(lengthPosition, (short) (replies.position() - lengthPosition - 2));
+                if (in.available() == 0) {
+                    out.write(replies.array(), 0, replies.position());
+                    out.flush();
+                    replies.clear();
+                }
+
+                int command = in.read();
+                if (command < 0) {
+                    return;
+                }
+                commands.increment();
+                if (command < INPUTS.length) {
+                    engine.input(INPUTS[command]);
+                } else if (command == TICK) {
+                    engine.tick();
+                } else if (command == NEW_GAME) {
+                    engine.start(in.readLong());
+                    keyframe = true;
+                } else {
+                    return;
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // the client went away
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+}
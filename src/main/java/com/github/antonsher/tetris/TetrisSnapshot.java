@@ -0,0 +1,94 @@
+package com.github.antonsher.tetris;
+
+import com.github.antonsher.tetris.TetrisModel.State;
+
+/**
+ * An immutable copy of the parts of a {@link TetrisModel} that renderers and observers look at.
+ * The {@link BoardSnapshot} is shared with the previous snapshot as long as the board has not changed,
+ * so a snapshot after a mere move of the tetra only copies the tetra.
+ */
+public class TetrisSnapshot {
+    public final BoardSnapshot board;
+    final long[] rows;
+    final int[][] colors;
+    final int width;
+    final int height;
+    public final int[][] tetra;
+    public final int[][] next;
+    // rows down to where the tetra would land, its ghost is drawn there
+    public final int dropDistance;
+    public final int score;
+    public final int lines;
+    public final int level;
+    public final State state;
+    final int changes;
+    final int boardChanges;
+
+    private TetrisSnapshot(TetrisModel model, BoardSnapshot board) {
+        this.board = board;
+        rows = board.rows;
+        colors = board.colors;
+        width = board.width;
+        height = board.height;
+        tetra = copy(model.tetra);
+        next = copy(model.next);
+        dropDistance = model.dropDistance();
+        score = model.score;
+        lines = model.lines;
+        level = model.level;
+        state = model.state;
+        changes = model.changes;
+        boardChanges = model.boardChanges;
+    }
+
+    public static TetrisSnapshot of(TetrisModel model, TetrisSnapshot previous) {
+        if (previous != null && previous.boardChanges == model.boardChanges) {
+            return new TetrisSnapshot(model, previous.board);
+        }
+        return new TetrisSnapshot(model, BoardSnapshot.of(model));
+    }
+
+    private static int[][] copy(int[][] array) {
+        int[][] copy = new int[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            copy[i] = array[i].clone();
+        }
+        return copy;
+    }
+
+    public int getBoardTile(int x, int y) {
+        return y < colors.length ? colors[y][x] : 0;
+    }
+
+    public int getBoardHeight() {
+        return height;
+    }
+
+    public int getBoardWidth() {
+        return width;
+    }
+
+    public int getStackHeight() {
+        return rows.length;
+    }
+
+    public int getTetraX(int i, int[][] tetra) {
+        return tetra[i][0];
+    }
+
+    public int getTetraY(int i, int[][] tetra) {
+        return tetra[i][1];
+    }
+
+    public int getTetraKind(int[][] tetra) {
+        return tetra[4][0];
+    }
+
+    public int getNextTetraX(int i) {
+        return getTetraX(i, next);
+    }
+
+    public int getNextTetraY(int i) {
+        return getTetraY(i, next);
+    }
+}
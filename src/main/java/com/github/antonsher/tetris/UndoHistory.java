@@ -0,0 +1,91 @@
+package com.github.antonsher.tetris;
+
+import java.util.Arrays;
+
+/**
+ * The last tetras of a game as they spawned, together with the board and the stats at that moment, so that
+ * {@link TetrisEngine#undo()} can take back locked tetras one at a time. The entries live in a ring buffer of a
+ * fixed capacity and their {@link BoardSnapshot}s share all untouched rows, so pushing an entry copies no tiles
+ * and the oldest entries are simply overwritten.
+ */
+public class UndoHistory {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final BoardSnapshot[] boards;
+    private final int[][][] tetras;
+    private final int[][][] nexts;
+    private final int[] scores;
+    private final int[] lines;
+    private final int[] levels;
+    private final int[] tillNexts;
+    private final int[] pieces;
+    // slot of the newest entry, the tetra currently in play
+    private int newest = -1;
+    private int size;
+
+    public UndoHistory(int capacity) {
+        boards = new BoardSnapshot[capacity];
+        tetras = new int[capacity][5][2];
+        nexts = new int[capacity][5][2];
+        scores = new int[capacity];
+        lines = new int[capacity];
+        levels = new int[capacity];
+        tillNexts = new int[capacity];
+        pieces = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(boards, null);
+        newest = -1;
+        size = 0;
+    }
+
+    void push(TetrisEngine engine) {
+        TetrisModel model = engine.model;
+        newest = (newest + 1) % boards.length;
+        size = Math.min(size + 1, boards.length);
+        boards[newest] = BoardSnapshot.of(model);
+        copy(model.tetra, tetras[newest]);
+        copy(model.next, nexts[newest]);
+        scores[newest] = model.score;
+        lines[newest] = model.lines;
+        levels[newest] = model.level;
+        tillNexts[newest] = model.tillNext;
+        pieces[newest] = engine.pieces;
+    }
+
+    // drops the tetra in play, returns false when there is no earlier one to go back to
+    boolean pop() {
+        if (size < 2) {
+            return false;
+        }
+        boards[newest] = null;
+        newest = (newest + boards.length - 1) % boards.length;
+        size--;
+        return true;
+    }
+
+    // puts the newest entry back into play
+    void restoreTo(TetrisEngine engine) {
+        TetrisModel model = engine.model;
+        boards[newest].restoreTo(model);
+        copy(tetras[newest], model.tetra);
+        copy(nexts[newest], model.next);
+        model.score = scores[newest];
+        model.lines = lines[newest];
+        model.level = levels[newest];
+        model.tillNext = tillNexts[newest];
+        engine.pieces = pieces[newest];
+    }
+
+    private static void copy(int[][] from, int[][] to) {
+        for (int i = 0; i < from.length; i++) {
+            to[i][0] = from[i][0];
+            to[i][1] = from[i][1];
+        }
+    }
+}
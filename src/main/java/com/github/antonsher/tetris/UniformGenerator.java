@@ -0,0 +1,27 @@
+package com.github.antonsher.tetris;
+
+import java.util.SplittableRandom;
+
+/**
+ * Every kind is equally likely, independently of the previous pieces.
+ */
+public class UniformGenerator implements PieceGenerator {
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public int id() {
+        return UNIFORM;
+    }
+
+    @Override
+    public void reset(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public void fill(int[] pieces, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            pieces[i] = PieceGenerator.orientation(1 + random.nextInt(KINDS), random);
+        }
+    }
+}
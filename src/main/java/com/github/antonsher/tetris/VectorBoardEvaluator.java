@@ -0,0 +1,111 @@
+package com.github.antonsher.tetris;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evaluates as many boards at once as a vector has long lanes, walking their rows from the highest stack down.
+ * The incubator Vector API of Java 17 has no lane-wise bit count, so bits are counted with SWAR arithmetic.
+ * Boards wider than {@value #MAX_WIDTH} columns or higher than {@value #MAX_HEIGHT} rows are left to
+ * {@link ScalarBoardEvaluator}.
+ * <p>
+ * Only loaded through {@link BoardEvaluator#create()}, and only works with {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorBoardEvaluator implements BoardEvaluator {
+    static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    // the four row masks of a board share a lane, a quarter each
+    static final int MAX_WIDTH = 16;
+    // a quarter sums up to width + 1 transitions a row
+    static final int MAX_HEIGHT = 0xFFFF / (MAX_WIDTH + 1);
+
+    private final ScalarBoardEvaluator otherBoards = new ScalarBoardEvaluator();
+    private final long[] features = new long[SPECIES.length()];
+
+    @Override
+    public void evaluate(BoardBatch batch) {
+        if (batch.width > MAX_WIDTH || batch.height > MAX_HEIGHT) {
+            otherBoards.evaluate(batch);
+            return;
+        }
+        int length = SPECIES.length();
+        for (int from = 0; from < batch.size; from += length) {
+            int to = Math.min(from + length, batch.size);
+            int top = batch.maxTop(from, to);
+            evaluateLanes(batch, from, top);
+            for (int b = from; b < to; b++) {
+                long sums = features[b - from];
+                batch.aggregateHeight[b] = (int) sums & 0xFFFF;
+                batch.holes[b] = (int) (sums >>> 16) & 0xFFFF;
+                // the rows above the highest stack are empty, both walls make two transitions each
+                batch.rowTransitions[b] = ((int) (sums >>> 32) & 0xFFFF) + 2 * (batch.height - top);
+                batch.bumpiness[b] = (int) (sums >>> 48);
+                batch.maxHeight[b] = maxHeight(batch, b);
+            }
+        }
+        batch.score(0, batch.size);
+    }
+
+    // a single bit count a row: with one for each feature the loop grows past the C2 inlining node budget,
+    // and the vectors of the calls left out get boxed on every row
+    private void evaluateLanes(BoardBatch batch, int from, int top) {
+        long fullRow = batch.fullRow;
+        long rightWall = 1L << (batch.width - 1);
+        long inner = fullRow >>> 1;
+        // the capacity is padded for vectors of up to BoardBatch.LANE_MULTIPLE lanes, wider ones (e.g. SVE) load
+        // the last group of boards masked so as not to run into the next row or past the array
+        VectorMask<Long> inBatch = from + SPECIES.length() > batch.capacity ? SPECIES.indexInRange(from, batch.capacity) : null;
+        LongVector covered = LongVector.zero(SPECIES);
+        LongVector sums = covered;
+        for (int y = top - 1; y >= 0; y--) {
+            int offset = y * batch.capacity + from;
+            LongVector row = inBatch == null ? LongVector.fromArray(SPECIES, batch.rows, offset)
+                    : LongVector.fromArray(SPECIES, batch.rows, offset, inBatch);
+            covered = covered.or(row);
+            LongVector holes = covered.lanewise(VectorOperators.AND_NOT, row);
+            LongVector right = row.lanewise(VectorOperators.LSHR, 1).or(rightWall);
+            LongVector transitions = row.lanewise(VectorOperators.XOR, right).and(fullRow);
+            LongVector bumps = covered.lanewise(VectorOperators.XOR, covered.lanewise(VectorOperators.LSHR, 1)).and(inner);
+            LongVector masks = covered.or(holes.lanewise(VectorOperators.LSHL, 16))
+                    .or(transitions.lanewise(VectorOperators.LSHL, 32))
+                    .or(bumps.lanewise(VectorOperators.LSHL, 48));
+            // plus the transition from the left wall into an empty first cell
+            sums = sums.add(quarterBitCounts(masks)).add(row.not().lanewise(VectorOperators.LSHL, 32).and(1L << 32));
+        }
+        sums.intoArray(features, 0);
+    }
+
+    // usually the top the board was added with, unless its highest rows were empty
+    private static int maxHeight(BoardBatch batch, int b) {
+        int y = batch.tops[b];
+        while (y > 0 && batch.rows[(y - 1) * batch.capacity + b] == 0) {
+            y--;
+        }
+        return y;
+    }
+
+    // SWAR bit counts of every 16 bits of a lane, each left in its own quarter: the sums of bit pairs, nibbles
+    // and bytes, then the two bytes of each quarter added up
+    private static LongVector quarterBitCounts(LongVector x) {
+        return quarters(bytes(nibbles(pairs(x))));
+    }
+
+    // the steps are split into methods under MaxInlineSize, C2 would not inline one big helper
+
+    private static LongVector pairs(LongVector x) {
+        return x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+    }
+
+    private static LongVector nibbles(LongVector x) {
+        return x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+    }
+
+    private static LongVector bytes(LongVector x) {
+        return x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+    }
+
+    private static LongVector quarters(LongVector x) {
+        return x.add(x.lanewise(VectorOperators.LSHR, 8)).and(0x001F001F001F001FL);
+    }
+}
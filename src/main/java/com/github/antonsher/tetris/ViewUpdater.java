@@ -0,0 +1,80 @@
+package com.github.antonsher.tetris;
+
+import java.awt.Component;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Supplier;
+
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+/**
+ * Carries model changes from the clock thread to the widgets. A change only sets the dirty flags of the widgets it
+ * touches, and however fast the game ticks at most one update waits on the event dispatch thread. It brings the dirty
+ * widgets up to the latest snapshot, and sets a text only when its value has changed.
+ */
+public class ViewUpdater implements Runnable {
+    public static final int BOARD = 1;
+    public static final int NEXT = 2;
+    public static final int SCORE = 4;
+    public static final int LINES = 8;
+    public static final int LEVEL = 16;
+    public static final int STATS = NEXT | SCORE | LINES | LEVEL;
+    public static final int ALL = BOARD | STATS;
+
+    private static final IntBinaryOperator OR = (dirty, widgets) -> dirty | widgets;
+
+    private final Supplier<TetrisSnapshot> snapshots;
+    private final Runnable boardRepainter;
+    private final Component nextPanel;
+    private final JTextField scoreField;
+    private final JTextField linesField;
+    private final JTextField levelField;
+    private final AtomicInteger dirty = new AtomicInteger();
+    // what the fields show, touched only on the event dispatch thread
+    private int shownScore = -1;
+    private int shownLines = -1;
+    private int shownLevel = -1;
+
+    ViewUpdater(Supplier<TetrisSnapshot> snapshots, Runnable boardRepainter, Component nextPanel,
+                JTextField scoreField, JTextField linesField, JTextField levelField) {
+        this.snapshots = snapshots;
+        this.boardRepainter = boardRepainter;
+        this.nextPanel = nextPanel;
+        this.scoreField = scoreField;
+        this.linesField = linesField;
+        this.levelField = levelField;
+    }
+
+    // from any thread; only the first change after an update queues the next one
+    public void mark(int widgets) {
+        if (widgets != 0 && dirty.getAndAccumulate(widgets, OR) == 0) {
+            SwingUtilities.invokeLater(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        // cleared before the snapshot is read, so a change published meanwhile queues another update
+        int widgets = dirty.getAndSet(0);
+        TetrisSnapshot snapshot = snapshots.get();
+        if ((widgets & SCORE) != 0 && snapshot.score != shownScore) {
+            shownScore = snapshot.score;
+            scoreField.setText(Integer.toString(shownScore));
+        }
+        if ((widgets & LINES) != 0 && snapshot.lines != shownLines) {
+            shownLines = snapshot.lines;
+            linesField.setText(Integer.toString(shownLines));
+        }
+        if ((widgets & LEVEL) != 0 && snapshot.level != shownLevel) {
+            shownLevel = snapshot.level;
+            levelField.setText(Integer.toString(shownLevel));
+        }
+        if ((widgets & NEXT) != 0) {
+            nextPanel.repaint();
+        }
+        if ((widgets & BOARD) != 0) {
+            boardRepainter.run();
+        }
+    }
+}